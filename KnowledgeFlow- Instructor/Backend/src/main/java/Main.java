@@ -1,7 +1,20 @@
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.FirebaseDatabase;
 import io.javalin.Javalin;
+import io.javalin.http.UnauthorizedResponse;
+import org.eclipse.jetty.server.Server;
+import config.JacksonJsonMapper;
+import config.ServerConfig;
+import service.EmailIndex;
+import service.FirebaseFutures;
 import service.FirebaseService;
+import service.SignupAvailability;
 import controller.UserController;
 import controller.CourseController;
+import controller.SessionFilter;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class Main {
     public static void main(String[] args) {
@@ -9,18 +22,42 @@ public class Main {
             // Initialize Firebase
             FirebaseService.getInstance().initializeFirebase();
             
+            // The user tree is read once here and shared by the startup jobs that need all of it
+            CompletableFuture<DataSnapshot> users = FirebaseFutures.read(FirebaseDatabase.getInstance().getReference("users"));
+            
+            // Index the emails of users created before the email index existed (once per database)
+            EmailIndex.getInstance().backfillIfNeeded(users).exceptionally(e -> {
+                FirebaseFutures.unwrap(e).printStackTrace();
+                return null;
+            });
+            
+            // Fill the username/email filters behind /signup/availability
+            SignupAvailability.getInstance().load(users).exceptionally(e -> {
+                FirebaseFutures.unwrap(e).printStackTrace();
+                return null;
+            });
+            
             // Create controllers
             UserController userController = new UserController();
             CourseController courseController = new CourseController();
             
             // Initialize Javalin
+            ServerConfig serverConfig = ServerConfig.getInstance();
             Javalin app = Javalin.create(config -> {
+                // Run handlers on the configured thread mode (-Dkf.threadMode=platform|virtual)
+                config.jetty.server(() -> new Server(serverConfig.createThreadPool()));
+                
+                // Cached per-type readers/writers on a Blackbird-enabled ObjectMapper
+                config.jsonMapper(new JacksonJsonMapper());
+                
                 config.plugins.enableCors(cors -> {
                     cors.add(corsConfig -> {
                         corsConfig.allowHost("http://localhost:3000");
                         corsConfig.allowHost("http://127.0.0.1:3000");
                         corsConfig.allowCredentials = true;
                         corsConfig.exposeHeader("*");
+                        // Wildcards are ignored for credentialed requests, so name paging headers explicitly
+                        corsConfig.exposeHeader("X-Next-Cursor");
                         corsConfig.maxAge = 3600;
                     });
                 });
@@ -30,11 +67,19 @@ public class Main {
             app.post("/register", userController::register);
             app.post("/signup", userController::register); // alias for register
             app.post("/login", userController::login);
+            app.get("/signup/availability", userController::checkAvailability);
+            app.get("/api/metrics/passwords", userController::getPasswordHashMetrics);
+            
+            // Course writes check the session token from /login, when one is sent
+            SessionFilter sessionFilter = new SessionFilter();
+            app.before("/courses", sessionFilter::handle);
+            app.exception(UnauthorizedResponse.class, (e, ctx) -> ctx.status(401).json(Map.of("error", e.getMessage())));
+            
             app.post("/courses", courseController::createCourse);
             app.get("/courses", courseController::getCourses);
             app.get("/courses/{id}", courseController::getCourseById);
             
-            System.out.println("Server started on port 7000");
+            System.out.println("Server started on port 7000 (" + serverConfig.getThreadMode().name().toLowerCase() + " threads)");
             
         } catch (Exception e) {
             System.err.println("Failed to start server: " + e.getMessage());
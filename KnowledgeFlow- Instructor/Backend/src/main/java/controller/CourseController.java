@@ -1,35 +1,40 @@
 package controller;
 
+import config.ServerConfig;
 import io.javalin.http.Context;
 import model.Course;
+import model.CourseCreatedResponse;
+import model.CreateCourseRequest;
 import model.Lesson;
 import model.Quiz;
 import service.CourseService;
+import service.FirebaseFutures;
+import service.SerializedResponse;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.UUID;
 
 public class CourseController {
     private final CourseService courseService;
+    private final int maxPageSize;
     
     public CourseController() {
         this.courseService = new CourseService();
+        this.maxPageSize = ServerConfig.getInt("kf.page.maxLimit", 100);
     }
     
     public void createCourse(Context ctx) {
         try {
             // Parse JSON request body from React frontend
-            Map<String, Object> requestBody = ctx.bodyAsClass(Map.class);
+            CreateCourseRequest request = ctx.bodyAsClass(CreateCourseRequest.class);
             
             // Extract required fields
-            String title = (String) requestBody.get("title");
-            String description = (String) requestBody.get("description");
-            String category = (String) requestBody.get("category");
-            String thumbnailUrl = (String) requestBody.get("thumbnailUrl");
-            String username = (String) requestBody.get("username");
+            String title = request.title();
+            String description = request.description();
+            String category = request.category();
+            String thumbnailUrl = request.thumbnailUrl();
+            String username = request.username();
             
             // Validate required fields
             if (title == null || description == null || thumbnailUrl == null || username == null) {
@@ -37,8 +42,15 @@ public class CourseController {
                 return;
             }
             
+            // With a session token, courses can only be created under its own username
+            String sessionUser = SessionFilter.sessionUser(ctx);
+            if (sessionUser != null && !sessionUser.equals(username)) {
+                ctx.status(403).json(Map.of("error", "Session does not belong to this user"));
+                return;
+            }
+            
             // Optional fields
-            String certificateLink = (String) requestBody.get("certificateLink");
+            String certificateLink = request.certificateLink();
             
             // Create course object
             String courseId = UUID.randomUUID().toString();
@@ -49,24 +61,19 @@ public class CourseController {
             }
             
             // Handle lessons if present
-            List<Map<String, Object>> rawLessons = (List<Map<String, Object>>) requestBody.get("lessons");
-            if (rawLessons != null && !rawLessons.isEmpty()) {
-                for (Map<String, Object> rawLesson : rawLessons) {
+            if (request.lessons() != null) {
+                for (CreateCourseRequest.LessonInput rawLesson : request.lessons()) {
                     Lesson lesson = new Lesson();
                     lesson.setId(UUID.randomUUID().toString());
-                    lesson.setTitle((String) rawLesson.get("title"));
-                    lesson.setContent((String) rawLesson.get("content"));
+                    lesson.setTitle(rawLesson.title());
+                    lesson.setContent(rawLesson.content());
                     
-                    if (rawLesson.get("order") != null) {
-                        if (rawLesson.get("order") instanceof Integer) {
-                            lesson.setOrder((Integer) rawLesson.get("order"));
-                        } else if (rawLesson.get("order") instanceof Long) {
-                            lesson.setOrder(((Long) rawLesson.get("order")).intValue());
-                        }
+                    if (rawLesson.order() != null) {
+                        lesson.setOrder(rawLesson.order());
                     }
                     
-                    if (rawLesson.get("videoUrl") != null) {
-                        lesson.setVideoUrl((String) rawLesson.get("videoUrl"));
+                    if (rawLesson.videoUrl() != null) {
+                        lesson.setVideoUrl(rawLesson.videoUrl());
                     }
                     
                     course.addLesson(lesson);
@@ -74,24 +81,15 @@ public class CourseController {
             }
             
             // Handle quizzes if present
-            List<Map<String, Object>> rawQuizzes = (List<Map<String, Object>>) requestBody.get("quizzes");
-            if (rawQuizzes != null && !rawQuizzes.isEmpty()) {
-                for (Map<String, Object> rawQuiz : rawQuizzes) {
+            if (request.quizzes() != null) {
+                for (CreateCourseRequest.QuizInput rawQuiz : request.quizzes()) {
                     Quiz quiz = new Quiz();
                     quiz.setId(UUID.randomUUID().toString());
-                    quiz.setQuestion((String) rawQuiz.get("question"));
-                    
-                    // Handle options
-                    List<String> options = (List<String>) rawQuiz.get("options");
-                    quiz.setOptions(options);
+                    quiz.setQuestion(rawQuiz.question());
+                    quiz.setOptions(rawQuiz.options());
                     
-                    // Handle correctOption
-                    if (rawQuiz.get("correctOption") != null) {
-                        if (rawQuiz.get("correctOption") instanceof Integer) {
-                            quiz.setCorrectOption((Integer) rawQuiz.get("correctOption"));
-                        } else if (rawQuiz.get("correctOption") instanceof Long) {
-                            quiz.setCorrectOption(((Long) rawQuiz.get("correctOption")).intValue());
-                        }
+                    if (rawQuiz.correctOption() != null) {
+                        quiz.setCorrectOption(rawQuiz.correctOption());
                     }
                     
                     course.addQuiz(quiz);
@@ -99,14 +97,16 @@ public class CourseController {
             }
             
             // Save course using service
-            Course createdCourse = courseService.createCourse(course);
-            
-            // Return success response
-            Map<String, Object> response = new HashMap<>();
-            response.put("message", "Course created successfully");
-            response.put("courseId", createdCourse.getId());
-            
-            ctx.status(201).json(response);
+            ctx.future(() -> courseService.createCourseAsync(course)
+                .thenAccept(createdCourse ->
+                    // Return success response
+                    ctx.status(201).json(new CourseCreatedResponse("Course created successfully", createdCourse.getId())))
+                .exceptionally(e -> {
+                    Throwable cause = FirebaseFutures.unwrap(e);
+                    cause.printStackTrace();
+                    ctx.status(500).json(Map.of("error", "Failed to create course: " + cause.getMessage()));
+                    return null;
+                }));
             
         } catch (Exception e) {
             e.printStackTrace();
@@ -124,13 +124,20 @@ public class CourseController {
                 return;
             }
             
-            Course course = courseService.getCourseById(courseId);
-            
-            if (course != null) {
-                ctx.json(course);
-            } else {
-                ctx.status(404).json(Map.of("error", "Course not found"));
-            }
+            ctx.future(() -> courseService.getCourseResponseAsync(courseId)
+                .thenAccept(course -> {
+                    if (course != null) {
+                        sendCached(ctx, course);
+                    } else {
+                        ctx.status(404).json(Map.of("error", "Course not found"));
+                    }
+                })
+                .exceptionally(e -> {
+                    Throwable cause = FirebaseFutures.unwrap(e);
+                    cause.printStackTrace();
+                    ctx.status(500).json(Map.of("error", "Failed to retrieve course: " + cause.getMessage()));
+                    return null;
+                }));
             
         } catch (Exception e) {
             e.printStackTrace();
@@ -138,6 +145,30 @@ public class CourseController {
         }
     }
     
+    // Answer from a pre-serialized body: 304 when the client already has this version, the
+    // gzip bytes (under their own ETag) when it accepts them, the plain JSON otherwise
+    private void sendCached(Context ctx, SerializedResponse body) {
+        String acceptEncoding = ctx.header("Accept-Encoding");
+        boolean gzip = body.getGzip() != null && acceptEncoding != null && acceptEncoding.contains("gzip");
+        
+        ctx.header("ETag", gzip ? body.getGzipEtag() : body.getEtag());
+        ctx.header("Cache-Control", "no-cache");
+        ctx.header("Vary", "Accept-Encoding");
+        
+        if (body.matches(ctx.header("If-None-Match"))) {
+            ctx.status(304);
+            return;
+        }
+        
+        ctx.contentType("application/json");
+        if (gzip) {
+            ctx.header("Content-Encoding", "gzip");
+            ctx.result(body.getGzip());
+        } else {
+            ctx.result(body.getJson());
+        }
+    }
+    
     public void getCourses(Context ctx) {
         try {
             // Get username from query parameters
@@ -148,10 +179,54 @@ public class CourseController {
                 return;
             }
             
-            Map<String, Course> courses = courseService.getCoursesByUser(username);
+            // Optional paging: ?limit=N&cursor=<X-Next-Cursor of the previous page>
+            String limitParam = ctx.queryParam("limit");
+            if (limitParam != null) {
+                int limit;
+                try {
+                    limit = Integer.parseInt(limitParam);
+                } catch (NumberFormatException e) {
+                    limit = 0;
+                }
+                if (limit <= 0) {
+                    ctx.status(400).json(Map.of("error", "limit must be a positive integer"));
+                    return;
+                }
+                
+                int pageSize = Math.min(limit, maxPageSize);
+                String cursor = ctx.queryParam("cursor");
+                
+                ctx.future(() -> courseService.getCoursesByUserPageAsync(username, pageSize, cursor)
+                    .thenAccept(page -> {
+                        // Same shape as the unpaged response, keyed by course id in page order
+                        Map<String, Course> courses = new LinkedHashMap<>();
+                        for (Course course : page.getItems()) {
+                            courses.put(course.getId(), course);
+                        }
+                        
+                        if (page.getNextCursor() != null) {
+                            ctx.header("X-Next-Cursor", page.getNextCursor());
+                        }
+                        ctx.json(courses);
+                    })
+                    .exceptionally(e -> {
+                        Throwable cause = FirebaseFutures.unwrap(e);
+                        cause.printStackTrace();
+                        ctx.status(500).json(Map.of("error", "Failed to retrieve courses: " + cause.getMessage()));
+                        return null;
+                    }));
+                return;
+            }
             
-            // Transform to JSON-friendly structure if needed
-            ctx.json(courses);
+            ctx.future(() -> courseService.getCoursesByUserAsync(username)
+                // Transform to JSON-friendly structure if needed
+                .thenAccept(courses -> ctx.json(courses))
+                .exceptionally(e -> {
+                    Throwable cause = FirebaseFutures.unwrap(e);
+                    cause.printStackTrace();
+                    ctx.status(500).json(Map.of("error", "Failed to retrieve courses: " + cause.getMessage()));
+                    return null;
+                }));
             
         } catch (Exception e) {
             e.printStackTrace();
@@ -0,0 +1,52 @@
+package controller;
+
+import config.ServerConfig;
+import io.javalin.http.Context;
+import io.javalin.http.HandlerType;
+import io.javalin.http.UnauthorizedResponse;
+import service.SessionTokens;
+
+// Before-handler for course writes: checks the "Authorization: Bearer <token>" header issued at
+// login and records whose request it is, so a course can only be created for the instructor
+// the token belongs to. Reads (GET, and CORS preflights) stay public.
+//
+// The frontend stores the token from /login and sends it on these requests (src/session.js).
+// Requests without a token are still let through for older clients unless
+// -Dkf.auth.required=true, which deployments should set once every client sends one; a token
+// that is present but invalid or expired is always rejected.
+public class SessionFilter {
+    private static final String USERNAME_ATTRIBUTE = "sessionUsername";
+    
+    private final SessionTokens tokens;
+    private final boolean required;
+    
+    public SessionFilter() {
+        this.tokens = SessionTokens.getInstance();
+        this.required = ServerConfig.getBoolean("kf.auth.required", false);
+    }
+    
+    public void handle(Context ctx) {
+        if (ctx.method() == HandlerType.GET || ctx.method() == HandlerType.OPTIONS) {
+            return;
+        }
+        
+        String authorization = ctx.header("Authorization");
+        if (authorization == null || !authorization.startsWith("Bearer ")) {
+            if (required) {
+                throw new UnauthorizedResponse("Session token required");
+            }
+            return;
+        }
+        
+        String username = tokens.verify(authorization.substring("Bearer ".length()).trim());
+        if (username == null) {
+            throw new UnauthorizedResponse("Invalid or expired session token");
+        }
+        ctx.attribute(USERNAME_ATTRIBUTE, username);
+    }
+    
+    // The username the request's token was issued to, or null when it came without one
+    static String sessionUser(Context ctx) {
+        return ctx.attribute(USERNAME_ATTRIBUTE);
+    }
+}
\ No newline at end of file
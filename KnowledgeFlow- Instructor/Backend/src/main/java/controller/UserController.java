@@ -2,16 +2,27 @@ package controller;
 
 import io.javalin.http.Context;
 import model.User;
+import service.FirebaseFutures;
+import service.PasswordHasher;
+import service.SessionTokens;
+import service.SignupAvailability;
 import service.UserService;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 public class UserController {
     private final UserService userService;
+    private final SessionTokens sessionTokens;
+    private final SignupAvailability signupAvailability;
     
     public UserController() {
         this.userService = new UserService();
+        this.sessionTokens = SessionTokens.getInstance();
+        this.signupAvailability = SignupAvailability.getInstance();
     }
     
     public void register(Context ctx) {
@@ -29,19 +40,80 @@ public class UserController {
             }
             
             User user = new User(username, email, password);
-            boolean created = userService.createUser(user);
+            ctx.future(() -> userService.createUserAsync(user)
+                .thenAccept(created -> {
+                    if (created) {
+                        signupAvailability.recordSignup(username, email);
+                        ctx.status(201).json(Map.of("message", "User registered successfully!"));
+                    }
+                })
+                .exceptionally(e -> {
+                    handleRegisterError(ctx, FirebaseFutures.unwrap(e));
+                    return null;
+                }));
             
-            if (created) {
-                ctx.status(201).json(Map.of("message", "User registered successfully!"));
+        } catch (Exception e) {
+            handleRegisterError(ctx, e);
+        }
+    }
+    
+    // GET /signup/availability?username=...&email=... for the signup form; either parameter may
+    // be left out, and only the ones given are answered
+    public void checkAvailability(Context ctx) {
+        try {
+            String username = ctx.queryParam("username");
+            String email = ctx.queryParam("email");
+            
+            if (username == null && email == null) {
+                ctx.status(400).json(Map.of("error", "username or email is required"));
+                return;
             }
             
+            CompletableFuture<Boolean> usernameAvailable = username != null
+                ? signupAvailability.isUsernameAvailable(username)
+                : CompletableFuture.completedFuture(null);
+            CompletableFuture<Boolean> emailAvailable = email != null
+                ? signupAvailability.isEmailAvailable(email)
+                : CompletableFuture.completedFuture(null);
+            
+            ctx.future(() -> usernameAvailable.thenCombine(emailAvailable, (usernameFree, emailFree) -> {
+                    Map<String, Object> response = new LinkedHashMap<>();
+                    if (usernameFree != null) {
+                        response.put("usernameAvailable", usernameFree);
+                    }
+                    if (emailFree != null) {
+                        response.put("emailAvailable", emailFree);
+                    }
+                    return response;
+                })
+                .thenAccept(response -> ctx.json(response))
+                .exceptionally(e -> {
+                    ctx.status(500).json(Map.of("error", "Server error: " + FirebaseFutures.unwrap(e).getMessage()));
+                    return null;
+                }));
+            
         } catch (Exception e) {
-            if (e.getMessage().contains("Username is already taken") || 
-                e.getMessage().contains("Email is already registered")) {
-                ctx.status(409).json(Map.of("error", e.getMessage()));
-            } else {
-                ctx.status(500).json(Map.of("error", "Error while registering user: " + e.getMessage()));
-            }
+            ctx.status(500).json(Map.of("error", "Server error: " + e.getMessage()));
+        }
+    }
+    
+    // The password pool is full: tell the client to come back rather than queueing without bound
+    private void rejectBusy(Context ctx) {
+        ctx.header("Retry-After", "1");
+        ctx.status(503).json(Map.of("error", "Server is busy, please try again"));
+    }
+    
+    private void handleRegisterError(Context ctx, Throwable e) {
+        if (e instanceof RejectedExecutionException) {
+            rejectBusy(ctx);
+            return;
+        }
+        
+        if (e.getMessage().contains("Username is already taken") || 
+            e.getMessage().contains("Email is already registered")) {
+            ctx.status(409).json(Map.of("error", e.getMessage()));
+        } else {
+            ctx.status(500).json(Map.of("error", "Error while registering user: " + e.getMessage()));
         }
     }
     
@@ -58,30 +130,48 @@ public class UserController {
                 return;
             }
             
-            User authenticatedUser = userService.login(username, password);
-            
-            if (authenticatedUser != null) {
-                // Create user response, excluding password
-                Map<String, Object> userResponse = new HashMap<>();
-                userResponse.put("username", authenticatedUser.getUsername());
-                userResponse.put("email", authenticatedUser.getEmail());
-                
-                if (authenticatedUser.getCourses() != null && !authenticatedUser.getCourses().isEmpty()) {
-                    userResponse.put("courses", authenticatedUser.getCourses());
-                }
-                
-                // Create full response
-                Map<String, Object> response = new HashMap<>();
-                response.put("message", "Login successful");
-                response.put("user", userResponse);
-                
-                ctx.status(200).json(response);
-            } else {
-                ctx.status(401).json(Map.of("error", "Invalid username or password"));
-            }
+            ctx.future(() -> userService.loginAsync(username, password)
+                .thenAccept(authenticatedUser -> {
+                    if (authenticatedUser != null) {
+                        // Create user response, excluding password
+                        Map<String, Object> userResponse = new HashMap<>();
+                        userResponse.put("username", authenticatedUser.getUsername());
+                        userResponse.put("email", authenticatedUser.getEmail());
+                        
+                        if (authenticatedUser.getCourses() != null && !authenticatedUser.getCourses().isEmpty()) {
+                            userResponse.put("courses", authenticatedUser.getCourses());
+                        }
+                        
+                        // Create full response
+                        Map<String, Object> response = new HashMap<>();
+                        response.put("message", "Login successful");
+                        response.put("user", userResponse);
+                        
+                        // Sent back as "Authorization: Bearer <token>" when creating courses
+                        response.put("token", sessionTokens.issue(authenticatedUser.getUsername()));
+                        response.put("expiresIn", sessionTokens.getTtlSeconds());
+                        
+                        ctx.status(200).json(response);
+                    } else {
+                        ctx.status(401).json(Map.of("error", "Invalid username or password"));
+                    }
+                })
+                .exceptionally(e -> {
+                    Throwable cause = FirebaseFutures.unwrap(e);
+                    if (cause instanceof RejectedExecutionException) {
+                        rejectBusy(ctx);
+                        return null;
+                    }
+                    ctx.status(500).json(Map.of("error", "Server error: " + cause.getMessage()));
+                    return null;
+                }));
             
         } catch (Exception e) {
             ctx.status(500).json(Map.of("error", "Server error: " + e.getMessage()));
         }
     }
+    
+    public void getPasswordHashMetrics(Context ctx) {
+        ctx.json(PasswordHasher.getInstance().getMetrics());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,3 @@
+package model;
+
+public record CourseCreatedResponse(String message, String courseId) {}
\ No newline at end of file
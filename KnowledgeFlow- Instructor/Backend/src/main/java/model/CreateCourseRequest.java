@@ -0,0 +1,19 @@
+package model;
+
+import java.util.List;
+
+// Body of POST /courses as sent by the course builder
+public record CreateCourseRequest(
+    String title,
+    String description,
+    String category,
+    String thumbnailUrl,
+    String username,
+    String certificateLink,
+    List<LessonInput> lessons,
+    List<QuizInput> quizzes
+) {
+    public record LessonInput(String title, String content, Integer order, String videoUrl) {}
+    
+    public record QuizInput(String question, List<String> options, Integer correctOption) {}
+}
\ No newline at end of file
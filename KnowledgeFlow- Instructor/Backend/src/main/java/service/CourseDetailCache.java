@@ -0,0 +1,151 @@
+package service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+import config.JacksonJsonMapper;
+import config.ServerConfig;
+import model.Course;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+// Serialized courses for GET /courses/{id}, so a course being viewed repeatedly is neither
+// re-read nor re-serialized per request. Each cached course keeps a value listener on
+// courses/{id}: the first event fills the entry and later ones replace it, so edits made by any
+// server show up without a TTL. A course that does not exist is not cached.
+//
+// At most kf.courseCache.maxEntries (default 500) courses are kept, least recently viewed out
+// first; evicting a course detaches its listener, and one evicted before its first event is
+// answered with a direct read so no caller is left waiting.
+public class CourseDetailCache {
+    private static final ObjectWriter WRITER = JacksonJsonMapper.createObjectMapper().writerFor(Course.class);
+    
+    private final DatabaseReference courseRef;
+    private final Map<String, Entry> entries;
+    
+    private class Entry implements ValueEventListener {
+        final String courseId;
+        final CompletableFuture<SerializedResponse> loaded = new CompletableFuture<>();
+        volatile SerializedResponse current;
+        
+        Entry(String courseId) {
+            this.courseId = courseId;
+        }
+        
+        @Override
+        public void onDataChange(DataSnapshot snapshot) {
+            if (!snapshot.exists()) {
+                remove(this);
+                loaded.complete(null);
+                return;
+            }
+            
+            try {
+                current = serialize(CourseService.toCourse(snapshot));
+                loaded.complete(current);
+            } catch (RuntimeException e) {
+                remove(this);
+                loaded.completeExceptionally(e);
+            }
+        }
+        
+        @Override
+        public void onCancelled(DatabaseError error) {
+            remove(this);
+            loaded.completeExceptionally(error.toException());
+        }
+        
+        // Evicted before its first event: callers may be waiting on loaded, so answer them with
+        // a one-off read now that the listener is gone
+        void evicted() {
+            if (loaded.isDone()) {
+                return;
+            }
+            FirebaseFutures.read(courseRef.child(courseId))
+                .thenApply(snapshot -> snapshot.exists() ? serialize(CourseService.toCourse(snapshot)) : null)
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        loaded.completeExceptionally(FirebaseFutures.unwrap(error));
+                    } else {
+                        loaded.complete(response);
+                    }
+                });
+        }
+    }
+    
+    private CourseDetailCache() {
+        this.courseRef = FirebaseDatabase.getInstance().getReference("courses");
+        int maxEntries = ServerConfig.getInt("kf.courseCache.maxEntries", 500);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxEntries) {
+                    courseRef.child(eldest.getKey()).removeEventListener(eldest.getValue());
+                    eldest.getValue().evicted();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+    
+    private static class Holder {
+        private static final CourseDetailCache INSTANCE = new CourseDetailCache();
+    }
+    
+    public static CourseDetailCache getInstance() {
+        return Holder.INSTANCE;
+    }
+    
+    // Completes with the serialized course, or null when it does not exist
+    public CompletableFuture<SerializedResponse> getAsync(String courseId) {
+        Entry entry;
+        boolean created = false;
+        synchronized (this) {
+            entry = entries.get(courseId);
+            if (entry == null) {
+                entry = new Entry(courseId);
+                entries.put(courseId, entry);
+                created = true;
+            }
+        }
+        
+        // Attached outside the lock: Firebase may deliver a cached value on this thread. An
+        // eviction in between found nothing to detach (and already answered the waiters), so
+        // an entry that is no longer cached takes its listener off again.
+        if (created) {
+            courseRef.child(courseId).addValueEventListener(entry);
+            boolean cached;
+            synchronized (this) {
+                cached = entries.get(courseId) == entry;
+            }
+            if (!cached) {
+                courseRef.child(courseId).removeEventListener(entry);
+            }
+        }
+        
+        SerializedResponse current = entry.current;
+        return current != null ? CompletableFuture.completedFuture(current) : entry.loaded;
+    }
+    
+    private void remove(Entry entry) {
+        synchronized (this) {
+            entries.remove(entry.courseId, entry);
+        }
+        courseRef.child(entry.courseId).removeEventListener(entry);
+    }
+    
+    private static SerializedResponse serialize(Course course) {
+        try {
+            return SerializedResponse.of(WRITER.writeValueAsBytes(course));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize course " + course.getId(), e);
+        }
+    }
+}
\ No newline at end of file
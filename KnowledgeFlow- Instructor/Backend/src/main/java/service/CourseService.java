@@ -3,10 +3,11 @@ package service;
 import com.google.firebase.database.*;
 import model.Course;
 import model.Lesson;
+import model.Page;
 import model.Quiz;
 
 import java.util.*;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
 
 public class CourseService {
     private final DatabaseReference courseRef;
@@ -18,6 +19,10 @@ public class CourseService {
     }
     
     public Course createCourse(Course course) throws Exception {
+        return FirebaseFutures.await(createCourseAsync(course));
+    }
+    
+    public CompletableFuture<Course> createCourseAsync(Course course) {
         // Generate a UUID for the course if not provided
         if (course.getId() == null || course.getId().isEmpty()) {
             course.setId(UUID.randomUUID().toString());
@@ -39,11 +44,14 @@ public class CourseService {
             courseData.put("certificateLink", course.getCertificateLink());
         }
         
-        // Save the course
-        courseRef.child(course.getId()).setValueAsync(courseData).get();
+        // The course's table of contents, read by learners when they open a course so lesson
+        // bodies are only downloaded one at a time
+        Map<String, Object> outlineLessons = new HashMap<>();
+        Map<String, Object> outlineQuizzes = new HashMap<>();
         
         // Add lessons if present
         if (course.getLessons() != null && !course.getLessons().isEmpty()) {
+            Map<String, Object> lessonsData = new HashMap<>();
             for (Lesson lesson : course.getLessons()) {
                 if (lesson.getId() == null) {
                     lesson.setId(UUID.randomUUID().toString());
@@ -57,12 +65,18 @@ public class CourseService {
                     lessonData.put("videoUrl", lesson.getVideoUrl());
                 }
                 
-                courseRef.child(course.getId()).child("lessons").child(lesson.getId()).setValueAsync(lessonData).get();
+                lessonsData.put(lesson.getId(), lessonData);
+                
+                Map<String, Object> outlineLesson = new HashMap<>(lessonData);
+                outlineLesson.remove("content");
+                outlineLessons.put(lesson.getId(), outlineLesson);
             }
+            courseData.put("lessons", lessonsData);
         }
         
         // Add quizzes if present
         if (course.getQuizzes() != null && !course.getQuizzes().isEmpty()) {
+            Map<String, Object> quizzesData = new HashMap<>();
             for (Quiz quiz : course.getQuizzes()) {
                 if (quiz.getId() == null) {
                     quiz.setId(UUID.randomUUID().toString());
@@ -73,158 +87,188 @@ public class CourseService {
                 quizData.put("options", quiz.getOptions());
                 quizData.put("correctOption", quiz.getCorrectOption());
                 
-                courseRef.child(course.getId()).child("quizzes").child(quiz.getId()).setValueAsync(quizData).get();
+                quizzesData.put(quiz.getId(), quizData);
+                outlineQuizzes.put(quiz.getId(), true);
             }
+            courseData.put("quizzes", quizzesData);
         }
         
-        // Add course to user's course list
-        userService.addCourseToUser(course.getCreatorUsername(), course.getId());
+        // Fan the course, its lessons and quizzes, its outline, and the creator's course index out
+        // in a single multi-path update: one round trip regardless of course size, and all-or-nothing
+        Map<String, Object> updates = new HashMap<>();
+        updates.put(courseRef.getKey() + "/" + course.getId(), courseData);
+        updates.put("courseOutlines/" + course.getId(), Map.of("lessons", outlineLessons, "quizzes", outlineQuizzes));
+        updates.putAll(userService.addCourseToUserUpdate(course.getCreatorUsername(), course.getId()));
         
-        return course;
+        return FirebaseFutures.toCompletable(courseRef.getRoot().updateChildrenAsync(updates))
+            .thenApply(ignored -> course);
     }
     
     public Course getCourseById(String courseId) throws Exception {
-        final Course[] retrievedCourse = {null};
-        final CountDownLatch latch = new CountDownLatch(1);
-        
-        courseRef.child(courseId).addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(DataSnapshot dataSnapshot) {
-                if (dataSnapshot.exists()) {
-                    Course course = new Course();
-                    course.setId(courseId);
-                    
-                    // Get course basic fields
-                    course.setTitle(dataSnapshot.child("title").getValue(String.class));
-                    course.setDescription(dataSnapshot.child("description").getValue(String.class));
-                    course.setCategory(dataSnapshot.child("category").getValue(String.class));
-                    course.setThumbnailUrl(dataSnapshot.child("thumbnailUrl").getValue(String.class));
-                    course.setCreatorUsername(dataSnapshot.child("creatorUsername").getValue(String.class));
-                    
-                    if (dataSnapshot.hasChild("certificateLink")) {
-                        course.setCertificateLink(dataSnapshot.child("certificateLink").getValue(String.class));
-                    }
-                    
-                    // Get timestamp
-                    if (dataSnapshot.hasChild("createdAt")) {
-                        Object createdAtObj = dataSnapshot.child("createdAt").getValue();
-                        if (createdAtObj instanceof Long) {
-                            course.setCreatedAt((Long) createdAtObj);
-                        }
+        return FirebaseFutures.await(getCourseByIdAsync(courseId));
+    }
+    
+    public CompletableFuture<Course> getCourseByIdAsync(String courseId) {
+        return FirebaseFutures.read(courseRef.child(courseId))
+            .thenApply(dataSnapshot -> dataSnapshot.exists() ? toCourse(dataSnapshot) : null);
+    }
+    
+    // The serialized course for GET /courses/{id}, served from CourseDetailCache
+    public CompletableFuture<SerializedResponse> getCourseResponseAsync(String courseId) {
+        return CourseDetailCache.getInstance().getAsync(courseId);
+    }
+    
+    // A full course, lessons and quizzes included, from its courses/{id} snapshot
+    static Course toCourse(DataSnapshot dataSnapshot) {
+        Course course = new Course();
+        course.setId(dataSnapshot.getKey());
+        
+        // Get course basic fields
+        course.setTitle(dataSnapshot.child("title").getValue(String.class));
+        course.setDescription(dataSnapshot.child("description").getValue(String.class));
+        course.setCategory(dataSnapshot.child("category").getValue(String.class));
+        course.setThumbnailUrl(dataSnapshot.child("thumbnailUrl").getValue(String.class));
+        course.setCreatorUsername(dataSnapshot.child("creatorUsername").getValue(String.class));
+        
+        if (dataSnapshot.hasChild("certificateLink")) {
+            course.setCertificateLink(dataSnapshot.child("certificateLink").getValue(String.class));
+        }
+        
+        // Get timestamp
+        if (dataSnapshot.hasChild("createdAt")) {
+            Object createdAtObj = dataSnapshot.child("createdAt").getValue();
+            if (createdAtObj instanceof Long) {
+                course.setCreatedAt((Long) createdAtObj);
+            }
+        }
+        
+        // Get lessons
+        if (dataSnapshot.hasChild("lessons")) {
+            List<Lesson> lessons = new ArrayList<>();
+            for (DataSnapshot lessonSnapshot : dataSnapshot.child("lessons").getChildren()) {
+                Lesson lesson = new Lesson();
+                lesson.setId(lessonSnapshot.getKey());
+                lesson.setTitle(lessonSnapshot.child("title").getValue(String.class));
+                lesson.setContent(lessonSnapshot.child("content").getValue(String.class));
+                
+                if (lessonSnapshot.hasChild("order")) {
+                    Object orderObj = lessonSnapshot.child("order").getValue();
+                    if (orderObj instanceof Long) {
+                        lesson.setOrder(((Long) orderObj).intValue());
                     }
-                    
-                    // Get lessons
-                    if (dataSnapshot.hasChild("lessons")) {
-                        List<Lesson> lessons = new ArrayList<>();
-                        for (DataSnapshot lessonSnapshot : dataSnapshot.child("lessons").getChildren()) {
-                            Lesson lesson = new Lesson();
-                            lesson.setId(lessonSnapshot.getKey());
-                            lesson.setTitle(lessonSnapshot.child("title").getValue(String.class));
-                            lesson.setContent(lessonSnapshot.child("content").getValue(String.class));
-                            
-                            if (lessonSnapshot.hasChild("order")) {
-                                Object orderObj = lessonSnapshot.child("order").getValue();
-                                if (orderObj instanceof Long) {
-                                    lesson.setOrder(((Long) orderObj).intValue());
-                                }
-                            }
-                            
-                            if (lessonSnapshot.hasChild("videoUrl")) {
-                                lesson.setVideoUrl(lessonSnapshot.child("videoUrl").getValue(String.class));
-                            }
-                            
-                            lessons.add(lesson);
-                        }
-                        course.setLessons(lessons);
+                }
+                
+                if (lessonSnapshot.hasChild("videoUrl")) {
+                    lesson.setVideoUrl(lessonSnapshot.child("videoUrl").getValue(String.class));
+                }
+                
+                lessons.add(lesson);
+            }
+            course.setLessons(lessons);
+        }
+        
+        // Get quizzes
+        if (dataSnapshot.hasChild("quizzes")) {
+            List<Quiz> quizzes = new ArrayList<>();
+            for (DataSnapshot quizSnapshot : dataSnapshot.child("quizzes").getChildren()) {
+                Quiz quiz = new Quiz();
+                quiz.setId(quizSnapshot.getKey());
+                quiz.setQuestion(quizSnapshot.child("question").getValue(String.class));
+                
+                if (quizSnapshot.hasChild("correctOption")) {
+                    Object correctOptionObj = quizSnapshot.child("correctOption").getValue();
+                    if (correctOptionObj instanceof Long) {
+                        quiz.setCorrectOption(((Long) correctOptionObj).intValue());
                     }
-                    
-                    // Get quizzes
-                    if (dataSnapshot.hasChild("quizzes")) {
-                        List<Quiz> quizzes = new ArrayList<>();
-                        for (DataSnapshot quizSnapshot : dataSnapshot.child("quizzes").getChildren()) {
-                            Quiz quiz = new Quiz();
-                            quiz.setId(quizSnapshot.getKey());
-                            quiz.setQuestion(quizSnapshot.child("question").getValue(String.class));
-                            
-                            if (quizSnapshot.hasChild("correctOption")) {
-                                Object correctOptionObj = quizSnapshot.child("correctOption").getValue();
-                                if (correctOptionObj instanceof Long) {
-                                    quiz.setCorrectOption(((Long) correctOptionObj).intValue());
-                                }
-                            }
-                            
-                            // Get options
-                            if (quizSnapshot.hasChild("options")) {
-                                List<String> options = new ArrayList<>();
-                                for (DataSnapshot optionSnapshot : quizSnapshot.child("options").getChildren()) {
-                                    options.add(optionSnapshot.getValue(String.class));
-                                }
-                                quiz.setOptions(options);
-                            }
-                            
-                            quizzes.add(quiz);
-                        }
-                        course.setQuizzes(quizzes);
+                }
+                
+                // Get options
+                if (quizSnapshot.hasChild("options")) {
+                    List<String> options = new ArrayList<>();
+                    for (DataSnapshot optionSnapshot : quizSnapshot.child("options").getChildren()) {
+                        options.add(optionSnapshot.getValue(String.class));
                     }
-                    
-                    retrievedCourse[0] = course;
+                    quiz.setOptions(options);
                 }
-                latch.countDown();
-            }
-            
-            @Override
-            public void onCancelled(DatabaseError databaseError) {
-                latch.countDown();
+                
+                quizzes.add(quiz);
             }
-        });
+            course.setQuizzes(quizzes);
+        }
         
-        latch.await();
-        return retrievedCourse[0];
+        return course;
     }
     
     public Map<String, Course> getCoursesByUser(String username) throws Exception {
-        final Map<String, Course> userCourses = new HashMap<>();
-        final CountDownLatch latch = new CountDownLatch(1);
-        
+        return FirebaseFutures.await(getCoursesByUserAsync(username));
+    }
+    
+    public CompletableFuture<Map<String, Course>> getCoursesByUserAsync(String username) {
         Query query = courseRef.orderByChild("creatorUsername").equalTo(username);
         
-        query.addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(DataSnapshot dataSnapshot) {
-                for (DataSnapshot courseSnapshot : dataSnapshot.getChildren()) {
-                    String courseId = courseSnapshot.getKey();
-                    
-                    Course course = new Course();
-                    course.setId(courseId);
-                    course.setTitle(courseSnapshot.child("title").getValue(String.class));
-                    course.setDescription(courseSnapshot.child("description").getValue(String.class));
-                    course.setCategory(courseSnapshot.child("category").getValue(String.class));
-                    course.setThumbnailUrl(courseSnapshot.child("thumbnailUrl").getValue(String.class));
-                    course.setCreatorUsername(courseSnapshot.child("creatorUsername").getValue(String.class));
-                    
-                    if (courseSnapshot.hasChild("certificateLink")) {
-                        course.setCertificateLink(courseSnapshot.child("certificateLink").getValue(String.class));
-                    }
-                    
-                    if (courseSnapshot.hasChild("createdAt")) {
-                        Object createdAtObj = courseSnapshot.child("createdAt").getValue();
-                        if (createdAtObj instanceof Long) {
-                            course.setCreatedAt((Long) createdAtObj);
-                        }
-                    }
-                    
-                    userCourses.put(courseId, course);
-                }
-                latch.countDown();
+        return FirebaseFutures.read(query).thenApply(dataSnapshot -> {
+            final Map<String, Course> userCourses = new HashMap<>();
+            
+            for (DataSnapshot courseSnapshot : dataSnapshot.getChildren()) {
+                userCourses.put(courseSnapshot.getKey(), toCourseSummary(courseSnapshot));
             }
             
-            @Override
-            public void onCancelled(DatabaseError databaseError) {
-                latch.countDown();
+            return userCourses;
+        });
+    }
+    
+    // One page of the user's courses in course id order. The cursor is the id of the last course
+    // on the previous page; within equal creatorUsername values the index orders by key, so
+    // startAt(username, cursor) resumes right at the cursor.
+    public CompletableFuture<Page<Course>> getCoursesByUserPageAsync(String username, int limit, String cursor) {
+        // Fetch one extra to know whether another page follows, and one more to skip the
+        // cursor itself since startAt is inclusive
+        int requested = limit + 1 + (cursor != null ? 1 : 0);
+        Query query = courseRef.orderByChild("creatorUsername");
+        query = cursor != null ? query.startAt(username, cursor) : query.startAt(username);
+        query = query.endAt(username).limitToFirst(requested);
+        
+        return FirebaseFutures.read(query).thenApply(dataSnapshot -> {
+            List<Course> courses = new ArrayList<>();
+            boolean hasMore = false;
+            
+            for (DataSnapshot courseSnapshot : dataSnapshot.getChildren()) {
+                if (courseSnapshot.getKey().equals(cursor)) {
+                    continue;
+                }
+                if (courses.size() == limit) {
+                    hasMore = true;
+                    break;
+                }
+                courses.add(toCourseSummary(courseSnapshot));
             }
+            
+            String nextCursor = hasMore ? courses.get(courses.size() - 1).getId() : null;
+            return new Page<>(courses, nextCursor);
         });
+    }
+    
+    // Listing fields of a course, without lessons and quizzes
+    private Course toCourseSummary(DataSnapshot courseSnapshot) {
+        Course course = new Course();
+        course.setId(courseSnapshot.getKey());
+        course.setTitle(courseSnapshot.child("title").getValue(String.class));
+        course.setDescription(courseSnapshot.child("description").getValue(String.class));
+        course.setCategory(courseSnapshot.child("category").getValue(String.class));
+        course.setThumbnailUrl(courseSnapshot.child("thumbnailUrl").getValue(String.class));
+        course.setCreatorUsername(courseSnapshot.child("creatorUsername").getValue(String.class));
+        
+        if (courseSnapshot.hasChild("certificateLink")) {
+            course.setCertificateLink(courseSnapshot.child("certificateLink").getValue(String.class));
+        }
         
-        latch.await();
-        return userCourses;
+        if (courseSnapshot.hasChild("createdAt")) {
+            Object createdAtObj = courseSnapshot.child("createdAt").getValue();
+            if (createdAtObj instanceof Long) {
+                course.setCreatedAt((Long) createdAtObj);
+            }
+        }
+        
+        return course;
     }
 }
\ No newline at end of file
@@ -0,0 +1,114 @@
+package service;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+// userEmails/{normalized email} -> username, so signup can check an email with one keyed
+// read instead of querying every user by email. Entries are written by the same multi-path
+// update as the user (UserService.register), so neither exists without the other.
+//
+// Users created before the index existed are added once by backfillIfNeeded(), which marks
+// meta/userEmailsBackfilled when done. Until then signup also runs the old email query.
+public class EmailIndex {
+    private static final String INDEX_NODE = "userEmails";
+    private static final String BACKFILL_MARKER = "meta/userEmailsBackfilled";
+    
+    private final DatabaseReference indexRef;
+    private final DatabaseReference userRef;
+    private volatile boolean backfilled;
+    
+    private EmailIndex() {
+        this.indexRef = FirebaseDatabase.getInstance().getReference(INDEX_NODE);
+        this.userRef = FirebaseDatabase.getInstance().getReference("users");
+    }
+    
+    private static class Holder {
+        private static final EmailIndex INSTANCE = new EmailIndex();
+    }
+    
+    public static EmailIndex getInstance() {
+        return Holder.INSTANCE;
+    }
+    
+    // Emails compare case-insensitively; the characters Firebase forbids in keys are escaped
+    public static String key(String email) {
+        String normalized = email.trim().toLowerCase(Locale.ROOT);
+        StringBuilder key = new StringBuilder(normalized.length());
+        for (char c : normalized.toCharArray()) {
+            if (c == '%' || c == '.' || c == '$' || c == '#' || c == '[' || c == ']' || c == '/') {
+                key.append('%').append(String.format("%02X", (int) c));
+            } else {
+                key.append(c);
+            }
+        }
+        return key.toString();
+    }
+    
+    public boolean isBackfilled() {
+        return backfilled;
+    }
+    
+    // Whether any user has the email. Users the backfill hasn't reached yet are only found by
+    // querying every email.
+    public CompletableFuture<Boolean> isRegisteredAsync(String email) {
+        CompletableFuture<Boolean> indexed = FirebaseFutures.read(indexRef.child(key(email))).thenApply(DataSnapshot::exists);
+        if (backfilled) {
+            return indexed;
+        }
+        
+        CompletableFuture<Boolean> legacy = FirebaseFutures.read(userRef.orderByChild("email").equalTo(email))
+            .thenApply(DataSnapshot::exists);
+        return indexed.thenCombine(legacy, (inIndex, inUsers) -> inIndex || inUsers);
+    }
+    
+    // Path of the email's entry from the database root, for multi-path updates
+    public String path(String email) {
+        return INDEX_NODE + "/" + key(email);
+    }
+    
+    // Index every existing user's email, unless an earlier run already did. Needs the whole
+    // user tree, so it runs once per database rather than per signup, from the tree Main reads
+    // once for all startup jobs.
+    public CompletableFuture<Void> backfillIfNeeded(CompletableFuture<DataSnapshot> users) {
+        DatabaseReference markerRef = userRef.getRoot().child(BACKFILL_MARKER);
+        
+        return FirebaseFutures.read(markerRef).thenCompose(marker -> {
+            if (Boolean.TRUE.equals(marker.getValue(Boolean.class))) {
+                backfilled = true;
+                return CompletableFuture.completedFuture(null);
+            }
+            
+            CompletableFuture<DataSnapshot> indexRead = FirebaseFutures.read(indexRef);
+            return users.thenCombine(indexRead, (tree, index) -> {
+                Map<String, Object> updates = new HashMap<>();
+                for (DataSnapshot user : tree.getChildren()) {
+                    String email = user.child("email").getValue(String.class);
+                    if (email == null) {
+                        continue;
+                    }
+                    
+                    String key = key(email);
+                    String owner = index.child(key).getValue(String.class);
+                    if (user.getKey().equals(owner)) {
+                        continue;
+                    }
+                    if (owner != null || updates.containsKey(INDEX_NODE + "/" + key)) {
+                        // Duplicates from before the index: the first user keeps the address
+                        System.err.println("Email index: " + email + " is already claimed, skipping " + user.getKey());
+                        continue;
+                    }
+                    updates.put(INDEX_NODE + "/" + key, user.getKey());
+                }
+                updates.put(BACKFILL_MARKER, true);
+                return updates;
+            }).thenCompose(updates -> FirebaseFutures.toCompletable(userRef.getRoot().updateChildrenAsync(updates)))
+                .thenAccept(ignored -> backfilled = true);
+        });
+    }
+}
\ No newline at end of file
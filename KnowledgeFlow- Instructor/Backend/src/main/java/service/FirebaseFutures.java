@@ -0,0 +1,80 @@
+package service;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.firebase.database.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+// Bridges the callback-based Firebase API onto CompletableFuture so request
+// handlers can wait on the database without holding a thread
+public final class FirebaseFutures {
+    
+    private FirebaseFutures() {}
+    
+    // Read the value at a location once. The future completes on the Firebase
+    // event thread, so dependent stages must not block.
+    public static CompletableFuture<DataSnapshot> read(Query query) {
+        CompletableFuture<DataSnapshot> future = new CompletableFuture<>();
+        
+        query.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot dataSnapshot) {
+                future.complete(dataSnapshot);
+            }
+            
+            @Override
+            public void onCancelled(DatabaseError databaseError) {
+                future.completeExceptionally(databaseError.toException());
+            }
+        });
+        
+        return future;
+    }
+    
+    // Adapt the ApiFuture returned by setValueAsync / updateChildrenAsync
+    public static <T> CompletableFuture<T> toCompletable(ApiFuture<T> apiFuture) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        
+        ApiFutures.addCallback(apiFuture, new ApiFutureCallback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                future.complete(result);
+            }
+            
+            @Override
+            public void onFailure(Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }, MoreExecutors.directExecutor());
+        
+        return future;
+    }
+    
+    // Blocking adapter: rethrow the original failure rather than the
+    // ExecutionException wrapper so callers keep seeing the same messages
+    public static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+    
+    public static Throwable unwrap(Throwable throwable) {
+        Throwable current = throwable;
+        while ((current instanceof CompletionException || current instanceof ExecutionException)
+                && current.getCause() != null) {
+            current = current.getCause();
+        }
+        return current;
+    }
+}
\ No newline at end of file
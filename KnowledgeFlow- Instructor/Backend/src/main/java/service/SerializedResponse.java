@@ -0,0 +1,87 @@
+package service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.zip.GZIPOutputStream;
+
+// A response body serialized once and served many times: the JSON bytes, a gzip copy when the
+// body is big enough for compression to pay off, and a strong ETag derived from the content.
+// The gzip copy is a different representation, so it carries its own tag (the same one with a
+// "-gz" suffix).
+public class SerializedResponse {
+    private static final int GZIP_THRESHOLD = 1024;
+    
+    private final byte[] json;
+    private final byte[] gzip;
+    private final String etag;
+    
+    private SerializedResponse(byte[] json, byte[] gzip, String etag) {
+        this.json = json;
+        this.gzip = gzip;
+        this.etag = etag;
+    }
+    
+    public static SerializedResponse of(byte[] json) {
+        return new SerializedResponse(json, json.length >= GZIP_THRESHOLD ? gzip(json) : null, etag(json));
+    }
+    
+    public byte[] getJson() {
+        return json;
+    }
+    
+    // Null when the body is too small to be worth compressing
+    public byte[] getGzip() {
+        return gzip;
+    }
+    
+    public String getEtag() {
+        return etag;
+    }
+    
+    public String getGzipEtag() {
+        return etag.substring(0, etag.length() - 1) + "-gz\"";
+    }
+    
+    // If-None-Match may list several tags or "*"; weak comparison applies, so W/ is ignored.
+    // Either encoding's tag matches: the client revalidates the copy it already holds.
+    public boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        
+        for (String tag : ifNoneMatch.split(",")) {
+            String candidate = tag.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(etag) || candidate.equals(getGzipEtag())) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static String etag(byte[] json) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16)) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,81 @@
+package service;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.firebase.database.DataSnapshot;
+import config.ServerConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+// Answers "is this username / email free?" for the signup form as the user types. Bloom
+// filters over every known username and email say "definitely free" without touching the
+// database; only a "maybe taken" (a real match or a false positive) costs a keyed read.
+//
+// The filters are filled from the user tree at startup and from signups on this server.
+// Users created on other servers since startup may be reported free; the answer is advisory
+// and signup itself still checks both before writing.
+//
+// Sized for kf.availability.expectedUsers (default 100000) at a 1% false positive rate.
+public class SignupAvailability {
+    private final UserService userService;
+    private final EmailIndex emailIndex;
+    private final BloomFilter<CharSequence> usernames;
+    private final BloomFilter<CharSequence> emails;
+    private volatile boolean loaded;
+    
+    private SignupAvailability() {
+        this.userService = new UserService();
+        this.emailIndex = EmailIndex.getInstance();
+        
+        int expectedUsers = ServerConfig.getInt("kf.availability.expectedUsers", 100000);
+        this.usernames = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), expectedUsers, 0.01);
+        this.emails = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), expectedUsers, 0.01);
+    }
+    
+    private static class Holder {
+        private static final SignupAvailability INSTANCE = new SignupAvailability();
+    }
+    
+    public static SignupAvailability getInstance() {
+        return Holder.INSTANCE;
+    }
+    
+    // Filled from the whole user tree, read once at startup and shared with the other startup
+    // jobs (Main). Until it completes every check goes to the database.
+    public CompletableFuture<Void> load(CompletableFuture<DataSnapshot> users) {
+        return users.thenAccept(tree -> {
+            for (DataSnapshot user : tree.getChildren()) {
+                usernames.put(user.getKey());
+                String email = user.child("email").getValue(String.class);
+                if (email != null) {
+                    emails.put(EmailIndex.key(email));
+                }
+            }
+            loaded = true;
+        });
+    }
+    
+    public void recordSignup(String username, String email) {
+        usernames.put(username);
+        emails.put(EmailIndex.key(email));
+    }
+    
+    public CompletableFuture<Boolean> isUsernameAvailable(String username) {
+        // Not usable as a database key (child() would throw), so no user can have it
+        if (username.isEmpty() || username.chars().anyMatch(c -> ".#$[]/".indexOf(c) >= 0)) {
+            return CompletableFuture.completedFuture(false);
+        }
+        if (loaded && !usernames.mightContain(username)) {
+            return CompletableFuture.completedFuture(true);
+        }
+        return userService.userExistsAsync(username).thenApply(exists -> !exists);
+    }
+    
+    public CompletableFuture<Boolean> isEmailAvailable(String email) {
+        if (loaded && !emails.mightContain(EmailIndex.key(email))) {
+            return CompletableFuture.completedFuture(true);
+        }
+        return emailIndex.isRegisteredAsync(email).thenApply(registered -> !registered);
+    }
+}
\ No newline at end of file
@@ -1,6 +1,7 @@
 import React, { useState, useEffect } from 'react';
 import { motion } from 'framer-motion';
 import { ArrowLeft, Plus, Trash2, Film, FileText, HelpCircle, Award } from 'lucide-react';
+import { authFetch, clearSession } from './session';
 
 export default function CreateCoursePage() {
   const [user, setUser] = useState(null);
@@ -40,7 +41,7 @@ export default function CreateCoursePage() {
       setUser(parsedUser);
     } catch (error) {
       console.error("Error parsing user data:", error);
-      localStorage.removeItem('user');
+      clearSession();
       window.location.href = '/login';
     }
   }, []);
@@ -163,7 +164,7 @@ export default function CreateCoursePage() {
     
     try {
       // Send the course data to the API
-      const response = await fetch('http://localhost:7000/courses', {
+      const response = await authFetch('http://localhost:7000/courses', {
         method: 'POST',
         headers: { 'Content-Type': 'application/json' },
         body: JSON.stringify({
@@ -2,6 +2,7 @@ import React, { useState, useEffect } from 'react';
 import { motion } from 'framer-motion';
 import { Book, Plus, LogOut, User, Bell, Search } from 'lucide-react';
 import { useNavigate } from 'react-router-dom';
+import { clearSession } from './session';
 
 export default function DashboardPage() {
     const navigate = useNavigate();
@@ -33,7 +34,7 @@ export default function DashboardPage() {
     } catch (error) {
       console.error("Error parsing user data:", error);
       // Handle invalid data by redirecting to login
-      localStorage.removeItem('user');
+      clearSession();
       window.location.href = '/login';
     }
   }, []);
@@ -69,7 +70,7 @@ export default function DashboardPage() {
   };
 
   const handleLogout = () => {
-    localStorage.removeItem('user');
+    clearSession();
     window.location.href = '/login';
   };
 
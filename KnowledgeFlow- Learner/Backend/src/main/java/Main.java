@@ -1,8 +1,26 @@
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.FirebaseDatabase;
 import io.javalin.Javalin;
+import io.javalin.http.UnauthorizedResponse;
+import org.eclipse.jetty.server.Server;
 import config.FirebaseConfig;
+import config.JacksonJsonMapper;
+import config.ServerConfig;
 import controller.UserController;
 import controller.CourseController;
 import controller.LearnerController;
+import controller.SessionFilter;
+import service.CourseCatalog;
+import service.EmailIndex;
+import service.EnrollmentMigration;
+import service.FirebaseFutures;
+import service.ProgressWriteBuffer;
+import service.RecencyBackfill;
+import service.SignupAvailability;
+import service.StudentCountAggregator;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class Main {
     public static void main(String[] args) {
@@ -10,13 +28,50 @@ public class Main {
             // Initialize Firebase
             FirebaseConfig.getInstance().initializeFirebase();
             
+            // Start loading the course catalog so it is warm before the first browse request
+            CourseCatalog.getInstance();
+            
+            // The learner tree is read once here and shared by the startup jobs that need all of it
+            CompletableFuture<DataSnapshot> learners = FirebaseFutures.read(FirebaseDatabase.getInstance().getReference("learners"));
+            
+            // Index the emails of learners created before the email index existed (once per database)
+            EmailIndex.getInstance().backfillIfNeeded(learners).exceptionally(e -> {
+                FirebaseFutures.unwrap(e).printStackTrace();
+                return null;
+            });
+            
+            // Key enrollments by course id for learners enrolled before they were (once per database)
+            EnrollmentMigration.getInstance().migrateIfNeeded(learners).exceptionally(e -> {
+                FirebaseFutures.unwrap(e).printStackTrace();
+                return null;
+            });
+            
+            // Index the enrollments of learners created before the recency index existed (once per database)
+            RecencyBackfill.getInstance().backfillIfNeeded(learners).exceptionally(e -> {
+                FirebaseFutures.unwrap(e).printStackTrace();
+                return null;
+            });
+            
+            // Fill the username/email filters behind /signup/availability
+            SignupAvailability.getInstance().load(learners).exceptionally(e -> {
+                FirebaseFutures.unwrap(e).printStackTrace();
+                return null;
+            });
+            
             // Create controllers
             UserController userController = new UserController();
             CourseController courseController = new CourseController();
             LearnerController learnerController = new LearnerController();
             
             // Initialize Javalin
+            ServerConfig serverConfig = ServerConfig.getInstance();
             Javalin app = Javalin.create(config -> {
+                // Run handlers on the configured thread mode (-Dkf.threadMode=platform|virtual)
+                config.jetty.server(() -> new Server(serverConfig.createThreadPool()));
+                
+                // Cached per-type readers/writers on a Blackbird-enabled ObjectMapper
+                config.jsonMapper(new JacksonJsonMapper());
+                
                 config.plugins.enableCors(cors -> {
                     cors.add(corsConfig -> {
                         // Allow specific origin(s)
@@ -27,6 +82,8 @@ public class Main {
                         // Enable standard CORS settings
                         corsConfig.allowCredentials = true;
                         corsConfig.exposeHeader("*");
+                        // Wildcards are ignored for credentialed requests, so name paging headers explicitly
+                        corsConfig.exposeHeader("X-Next-Cursor");
                         corsConfig.maxAge = 3600;
                     });
                 });
@@ -35,18 +92,38 @@ public class Main {
             // User authentication routes
             app.post("/signup", userController::signupUser);
             app.post("/login", userController::loginUser);
+            app.get("/signup/availability", userController::checkAvailability);
             
             // Course routes
             app.get("/courses/{id}", courseController::getCourseById);
+            app.get("/courses/{id}/outline", courseController::getCourseOutline);
+            app.get("/courses/{id}/lessons/{lessonId}", courseController::getLesson);
+            app.get("/courses/{id}/quizzes/{quizId}", courseController::getQuiz);
             app.get("/api/courses", courseController::browseAllCourses);
+            app.get("/api/metrics/catalog", courseController::getCatalogMetrics);
+            app.get("/api/metrics/passwords", userController::getPasswordHashMetrics);
+            app.get("/api/metrics/progress", learnerController::getProgressMetrics);
+            
+            // Learner routes check the session token from /login, when one is sent
+            SessionFilter sessionFilter = new SessionFilter();
+            app.before("/api/users/*", sessionFilter::handle);
+            app.before("/api/courses/{id}/enroll", sessionFilter::handle);
+            app.exception(UnauthorizedResponse.class, (e, ctx) -> ctx.status(401).json(Map.of("error", e.getMessage())));
             
             // Learner-specific routes
             app.get("/api/users/{username}/enrolled-courses", learnerController::getEnrolledCourses);
             app.post("/api/courses/{id}/enroll", learnerController::enrollInCourse);
             app.post("/api/users/{username}/courses/{courseId}/progress", learnerController::updateCourseProgress);
+            app.patch("/api/users/{username}/courses/{courseId}/progress", learnerController::patchCourseProgress);
             app.get("/api/users/{username}/courses/{courseId}/progress", learnerController::getCourseProgress);
             
-            System.out.println("Server started on port 7000");
+            // Flush buffered counters and progress before the JVM exits
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                StudentCountAggregator.getInstance().shutdown();
+                ProgressWriteBuffer.getInstance().shutdown();
+            }));
+            
+            System.out.println("Server started on port 7000 (" + serverConfig.getThreadMode().name().toLowerCase() + " threads)");
             
         } catch (Exception e) {
             System.err.println("Failed to start server: " + e.getMessage());
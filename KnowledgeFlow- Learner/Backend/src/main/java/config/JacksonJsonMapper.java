@@ -0,0 +1,96 @@
+package config;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import io.javalin.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Javalin JSON mapper with one ObjectReader/ObjectWriter per type, built on first use and reused
+// for every later request, on a mapper with the Blackbird module so property access goes through
+// generated lambdas instead of reflection.
+public class JacksonJsonMapper implements JsonMapper {
+    private final ObjectMapper mapper;
+    private final Map<Type, ObjectReader> readers = new ConcurrentHashMap<>();
+    private final Map<Type, ObjectWriter> writers = new ConcurrentHashMap<>();
+    
+    public JacksonJsonMapper() {
+        this(createObjectMapper());
+    }
+    
+    public JacksonJsonMapper(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+    
+    public static ObjectMapper createObjectMapper() {
+        return new ObjectMapper()
+            .registerModule(new BlackbirdModule())
+            // Clients send more fields than the request types use
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+    
+    public ObjectWriter writerFor(Type type) {
+        return writers.computeIfAbsent(type, key -> {
+            JavaType javaType = mapper.constructType(key);
+            // Javalin passes the runtime class; Object only reaches us from callers without one
+            return javaType.getRawClass() == Object.class ? mapper.writer() : mapper.writerFor(javaType);
+        });
+    }
+    
+    public ObjectReader readerFor(Type type) {
+        return readers.computeIfAbsent(type, key -> mapper.readerFor(mapper.constructType(key)));
+    }
+    
+    @Override
+    public String toJsonString(Object obj, Type type) {
+        if (obj instanceof String) {
+            return (String) obj;
+        }
+        try {
+            return writerFor(type).writeValueAsString(obj);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    @Override
+    public InputStream toJsonStream(Object obj, Type type) {
+        if (obj instanceof String) {
+            return new ByteArrayInputStream(((String) obj).getBytes(StandardCharsets.UTF_8));
+        }
+        try {
+            return new ByteArrayInputStream(writerFor(type).writeValueAsBytes(obj));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    @Override
+    public <T> T fromJsonString(String json, Type targetType) {
+        try {
+            return readerFor(targetType).readValue(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    @Override
+    public <T> T fromJsonStream(InputStream json, Type targetType) {
+        try {
+            return readerFor(targetType).readValue(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
\ No newline at end of file
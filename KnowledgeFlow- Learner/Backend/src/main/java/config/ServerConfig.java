@@ -0,0 +1,66 @@
+package config;
+
+import io.javalin.util.ConcurrencyUtil;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import java.util.concurrent.Executors;
+
+// Server tuning knobs, read from -D system properties with an environment variable fallback
+// (e.g. -Dkf.threadMode=virtual or KF_THREAD_MODE=virtual)
+public class ServerConfig {
+    public enum ThreadMode {
+        PLATFORM,
+        VIRTUAL
+    }
+    
+    private static final ServerConfig instance = new ServerConfig();
+    
+    private ServerConfig() {}
+    
+    public static ServerConfig getInstance() {
+        return instance;
+    }
+    
+    public static String get(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            value = System.getenv(key.replace('.', '_').replaceAll("([a-z])([A-Z])", "$1_$2").toUpperCase());
+        }
+        return value != null && !value.isEmpty() ? value : defaultValue;
+    }
+    
+    public static int getInt(String key, int defaultValue) {
+        return Integer.parseInt(get(key, String.valueOf(defaultValue)));
+    }
+    
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        return Boolean.parseBoolean(get(key, String.valueOf(defaultValue)));
+    }
+    
+    public ThreadMode getThreadMode() {
+        return ThreadMode.valueOf(get("kf.threadMode", "platform").toUpperCase());
+    }
+    
+    public int getMaxThreads() {
+        return getInt("kf.maxThreads", 250);
+    }
+    
+    public ThreadPool createThreadPool() {
+        return createThreadPool(getThreadMode(), getMaxThreads());
+    }
+    
+    // PLATFORM is the pool Javalin would build for us; VIRTUAL keeps a small platform pool for
+    // Jetty's selectors and acceptors but runs each request handler on its own virtual thread,
+    // so handlers that wait on Firebase no longer cap throughput at maxThreads.
+    public static ThreadPool createThreadPool(ThreadMode mode, int maxThreads) {
+        ConcurrencyUtil.INSTANCE.setUseLoom(mode == ThreadMode.VIRTUAL);
+        
+        QueuedThreadPool threadPool = new QueuedThreadPool(maxThreads, 8, 60_000);
+        threadPool.setName("JettyServerThreadPool");
+        if (mode == ThreadMode.VIRTUAL) {
+            threadPool.setVirtualThreadsExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        }
+        return threadPool;
+    }
+}
\ No newline at end of file
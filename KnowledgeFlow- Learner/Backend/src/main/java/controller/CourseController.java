@@ -1,17 +1,20 @@
 package controller;
 
+import config.ServerConfig;
 import io.javalin.http.Context;
 import service.CourseService;
+import service.FirebaseFutures;
+import service.SerializedResponse;
 
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 public class CourseController {
     private final CourseService courseService;
+    private final int maxPageSize;
     
     public CourseController() {
         this.courseService = new CourseService();
+        this.maxPageSize = ServerConfig.getInt("kf.page.maxLimit", 100);
     }
     
     public void browseAllCourses(Context ctx) {
@@ -20,8 +23,70 @@ public class CourseController {
             String category = ctx.queryParam("category");
             String search = ctx.queryParam("search");
             
-            List<Map<String, Object>> courses = courseService.browseAllCourses(category, search);
-            ctx.json(courses);
+            // Optional paging: ?limit=N&cursor=<X-Next-Cursor of the previous page>
+            String limitParam = ctx.queryParam("limit");
+            if (limitParam != null) {
+                int limit;
+                try {
+                    limit = Integer.parseInt(limitParam);
+                } catch (NumberFormatException e) {
+                    limit = 0;
+                }
+                if (limit <= 0) {
+                    ctx.status(400).json(Map.of("error", "limit must be a positive integer"));
+                    return;
+                }
+                
+                int pageSize = Math.min(limit, maxPageSize);
+                String cursor = ctx.queryParam("cursor");
+                
+                ctx.future(() -> courseService.browseCoursesPageAsync(category, search, pageSize, cursor)
+                    .thenAccept(page -> {
+                        if (page.getNextCursor() != null) {
+                            ctx.header("X-Next-Cursor", page.getNextCursor());
+                        }
+                        ctx.json(page.getItems());
+                    })
+                    .exceptionally(e -> {
+                        Throwable cause = FirebaseFutures.unwrap(e);
+                        cause.printStackTrace();
+                        ctx.status(500).json(Map.of("error", "Failed to retrieve courses: " + cause.getMessage()));
+                        return null;
+                    }));
+                return;
+            }
+            
+            if (JsonStreamWriter.ENABLED) {
+                // Write each course as it comes off the catalog or snapshot
+                ctx.future(() -> courseService.browseSummariesAsync(category, search)
+                    .thenAcceptAsync(courses -> JsonStreamWriter.writeArray(ctx, courses.iterator(), (generator, course) -> {
+                        generator.writeStartObject();
+                        generator.writeStringField("id", course.getId());
+                        generator.writeStringField("title", course.getTitle());
+                        generator.writeStringField("description", course.getDescription());
+                        generator.writeStringField("creatorUsername", course.getCreatorUsername());
+                        generator.writeStringField("thumbnailUrl", course.getThumbnailUrl());
+                        generator.writeStringField("category", course.getCategory());
+                        generator.writeNumberField("students", courseService.getStudentCount(course));
+                        generator.writeEndObject();
+                    }), JsonStreamWriter.EXECUTOR)
+                    .exceptionally(e -> {
+                        Throwable cause = FirebaseFutures.unwrap(e);
+                        cause.printStackTrace();
+                        ctx.status(500).json(Map.of("error", "Failed to retrieve courses: " + cause.getMessage()));
+                        return null;
+                    }));
+                return;
+            }
+            
+            ctx.future(() -> courseService.browseAllCoursesAsync(category, search)
+                .thenAccept(courses -> ctx.json(courses))
+                .exceptionally(e -> {
+                    Throwable cause = FirebaseFutures.unwrap(e);
+                    cause.printStackTrace();
+                    ctx.status(500).json(Map.of("error", "Failed to retrieve courses: " + cause.getMessage()));
+                    return null;
+                }));
             
         } catch (Exception e) {
             e.printStackTrace();
@@ -39,17 +104,144 @@ public class CourseController {
                 return;
             }
             
-            Map<String, Object> course = courseService.getCourseById(courseId);
+            ctx.future(() -> courseService.getCourseDetailResponseAsync(courseId)
+                .thenAccept(course -> {
+                    if (course != null) {
+                        sendCached(ctx, course);
+                    } else {
+                        ctx.status(404).json(Map.of("error", "Course not found"));
+                    }
+                })
+                .exceptionally(e -> {
+                    Throwable cause = FirebaseFutures.unwrap(e);
+                    cause.printStackTrace();
+                    ctx.status(500).json(Map.of("error", "Failed to retrieve course: " + cause.getMessage()));
+                    return null;
+                }));
             
-            if (course != null) {
-                ctx.json(course);
-            } else {
-                ctx.status(404).json(Map.of("error", "Course not found"));
+        } catch (Exception e) {
+            e.printStackTrace();
+            ctx.status(500).json(Map.of("error", "Failed to retrieve course: " + e.getMessage()));
+        }
+    }
+    
+    public void getCourseOutline(Context ctx) {
+        try {
+            String courseId = ctx.pathParam("id");
+            
+            if (courseId == null || courseId.isEmpty()) {
+                ctx.status(400).json(Map.of("error", "Course ID is required"));
+                return;
             }
             
+            ctx.future(() -> courseService.getCourseOutlineAsync(courseId)
+                .thenAccept(outline -> {
+                    if (outline != null) {
+                        ctx.json(outline);
+                    } else {
+                        ctx.status(404).json(Map.of("error", "Course not found"));
+                    }
+                })
+                .exceptionally(e -> {
+                    Throwable cause = FirebaseFutures.unwrap(e);
+                    cause.printStackTrace();
+                    ctx.status(500).json(Map.of("error", "Failed to retrieve course outline: " + cause.getMessage()));
+                    return null;
+                }));
+            
         } catch (Exception e) {
             e.printStackTrace();
-            ctx.status(500).json(Map.of("error", "Failed to retrieve course: " + e.getMessage()));
+            ctx.status(500).json(Map.of("error", "Failed to retrieve course outline: " + e.getMessage()));
+        }
+    }
+    
+    public void getLesson(Context ctx) {
+        try {
+            String courseId = ctx.pathParam("id");
+            String lessonId = ctx.pathParam("lessonId");
+            
+            if (courseId.isEmpty() || lessonId.isEmpty()) {
+                ctx.status(400).json(Map.of("error", "Course ID and lesson ID are required"));
+                return;
+            }
+            
+            ctx.future(() -> courseService.getLessonAsync(courseId, lessonId)
+                .thenAccept(lesson -> {
+                    if (lesson != null) {
+                        ctx.json(lesson);
+                    } else {
+                        ctx.status(404).json(Map.of("error", "Lesson not found"));
+                    }
+                })
+                .exceptionally(e -> {
+                    Throwable cause = FirebaseFutures.unwrap(e);
+                    cause.printStackTrace();
+                    ctx.status(500).json(Map.of("error", "Failed to retrieve lesson: " + cause.getMessage()));
+                    return null;
+                }));
+            
+        } catch (Exception e) {
+            e.printStackTrace();
+            ctx.status(500).json(Map.of("error", "Failed to retrieve lesson: " + e.getMessage()));
         }
     }
+    
+    public void getQuiz(Context ctx) {
+        try {
+            String courseId = ctx.pathParam("id");
+            String quizId = ctx.pathParam("quizId");
+            
+            if (courseId.isEmpty() || quizId.isEmpty()) {
+                ctx.status(400).json(Map.of("error", "Course ID and quiz ID are required"));
+                return;
+            }
+            
+            ctx.future(() -> courseService.getQuizAsync(courseId, quizId)
+                .thenAccept(quiz -> {
+                    if (quiz != null) {
+                        ctx.json(quiz);
+                    } else {
+                        ctx.status(404).json(Map.of("error", "Quiz not found"));
+                    }
+                })
+                .exceptionally(e -> {
+                    Throwable cause = FirebaseFutures.unwrap(e);
+                    cause.printStackTrace();
+                    ctx.status(500).json(Map.of("error", "Failed to retrieve quiz: " + cause.getMessage()));
+                    return null;
+                }));
+            
+        } catch (Exception e) {
+            e.printStackTrace();
+            ctx.status(500).json(Map.of("error", "Failed to retrieve quiz: " + e.getMessage()));
+        }
+    }
+    
+    // Answer from a pre-serialized body: 304 when the client already has this version, the
+    // gzip bytes (under their own ETag) when it accepts them, the plain JSON otherwise
+    private void sendCached(Context ctx, SerializedResponse body) {
+        String acceptEncoding = ctx.header("Accept-Encoding");
+        boolean gzip = body.getGzip() != null && acceptEncoding != null && acceptEncoding.contains("gzip");
+        
+        ctx.header("ETag", gzip ? body.getGzipEtag() : body.getEtag());
+        ctx.header("Cache-Control", "no-cache");
+        ctx.header("Vary", "Accept-Encoding");
+        
+        if (body.matches(ctx.header("If-None-Match"))) {
+            ctx.status(304);
+            return;
+        }
+        
+        ctx.contentType("application/json");
+        if (gzip) {
+            ctx.header("Content-Encoding", "gzip");
+            ctx.result(body.getGzip());
+        } else {
+            ctx.result(body.getJson());
+        }
+    }
+    
+    public void getCatalogMetrics(Context ctx) {
+        ctx.json(courseService.getCatalogMetrics());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,58 @@
+package controller;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import config.ServerConfig;
+import io.javalin.http.Context;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+// Writes a JSON array to the response one element at a time instead of building the whole body
+// first, so memory per request stays flat and the first bytes leave as soon as the first course
+// is ready. Jetty switches to chunked transfer once its output buffer fills.
+//
+// Enabled with -Dkf.json.streaming=true (KF_JSON_STREAMING=true).
+final class JsonStreamWriter {
+    static final boolean ENABLED = ServerConfig.getBoolean("kf.json.streaming", false);
+    
+    // Where streamed responses are written: blocking on the output stream is fine on a virtual
+    // thread, but not on the Firebase event thread that completes database reads
+    static final Executor EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+    
+    private static final JsonFactory FACTORY = new JsonFactory()
+        // Javalin finishes the response; we only flush what we wrote
+        .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    
+    interface ElementWriter<T> {
+        void write(JsonGenerator generator, T element) throws IOException;
+    }
+    
+    private JsonStreamWriter() {}
+    
+    static <T> void writeArray(Context ctx, Iterator<T> elements, ElementWriter<T> writer) {
+        ctx.contentType("application/json");
+        
+        try (JsonGenerator generator = FACTORY.createGenerator(ctx.outputStream())) {
+            generator.writeStartArray();
+            while (elements.hasNext()) {
+                writer.write(generator, elements.next());
+            }
+            generator.writeEndArray();
+        } catch (IOException e) {
+            // Usually the client went away; the status line has already been sent
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    static void writeNullableNumberField(JsonGenerator generator, String name, Long value) throws IOException {
+        if (value != null) {
+            generator.writeNumberField(name, value);
+        } else {
+            generator.writeNullField(name);
+        }
+    }
+}
\ No newline at end of file
@@ -2,26 +2,46 @@ package controller;
 
 import io.javalin.http.Context;
 import model.CourseProgress;
+import model.CourseSummary;
+import model.EnrollmentRequest;
+import model.EnrollmentResponse;
+import model.LearnerRecord;
+import model.ProgressPatch;
+import model.ProgressResponse;
+import model.ProgressStatus;
+import model.ProgressUpdate;
 import service.CourseService;
+import service.FirebaseFutures;
 import service.LearnerService;
+import service.ProgressWriteBuffer;
 import service.UserService;
 
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 public class LearnerController {
     private final LearnerService learnerService;
-    private final UserService userService;
     private final CourseService courseService;
+    private final UserService userService;
+    private final ProgressStore progressStore;
     
     public LearnerController() {
         this.learnerService = new LearnerService();
-        this.userService = new UserService();
         this.courseService = new CourseService();
+        this.userService = new UserService();
+        this.progressStore = ProgressStore.of(learnerService, courseService, userService);
+    }
+    
+    // For handler tests: only the progress writes, which go through the store, can be served
+    LearnerController(ProgressStore progressStore) {
+        this.learnerService = null;
+        this.courseService = null;
+        this.userService = null;
+        this.progressStore = progressStore;
     }
     
     public void getEnrolledCourses(Context ctx) {
@@ -33,14 +53,49 @@ public class LearnerController {
                 return;
             }
             
-            // Check if user exists
-            if (!userService.userExists(username)) {
-                ctx.status(404).json(Map.of("error", "User not found"));
+            // Optional ?limit=N: only the N most recently accessed courses, e.g. for "continue learning"
+            Integer limit = null;
+            String limitParam = ctx.queryParam("limit");
+            if (limitParam != null) {
+                try {
+                    limit = Integer.parseInt(limitParam);
+                } catch (NumberFormatException e) {
+                    limit = 0;
+                }
+                if (limit <= 0) {
+                    ctx.status(400).json(Map.of("error", "limit must be a positive integer"));
+                    return;
+                }
+            }
+            Integer maxCourses = limit;
+            
+            if (!sessionAllows(ctx, username)) {
                 return;
             }
             
-            List<Map<String, Object>> enrolledCourses = learnerService.getEnrolledCourses(username);
-            ctx.json(enrolledCourses);
+            // Already ordered by last access; read alongside the learner record
+            CompletableFuture<List<String>> recent = learnerService.getRecentCourseIdsAsync(username, maxCourses);
+            
+            ctx.future(() -> learnerRecord(ctx, username).thenCompose(record -> {
+                // Check if user exists
+                if (record == null) {
+                    ctx.status(404).json(Map.of("error", "User not found"));
+                    return CompletableFuture.completedFuture(null);
+                }
+                
+                return recent.thenCompose(recentCourseIds -> {
+                    List<String> courseIds = learnerService.orderEnrollments(record, recentCourseIds, maxCourses);
+                    
+                    // Stream straight from the catalog when it is loaded
+                    List<CourseSummary> summaries = JsonStreamWriter.ENABLED ? learnerService.getEnrolledSummaries(courseIds) : null;
+                    if (summaries != null) {
+                        return CompletableFuture.runAsync(() -> writeEnrolledCourses(ctx, record, summaries), JsonStreamWriter.EXECUTOR);
+                    }
+                    
+                    return learnerService.getEnrolledCoursesAsync(record, courseIds)
+                        .thenAccept(enrolledCourses -> ctx.json(enrolledCourses));
+                });
+            }).exceptionally(e -> fail(ctx, "Failed to retrieve enrolled courses: ", e)));
             
         } catch (Exception e) {
             e.printStackTrace();
@@ -51,40 +106,45 @@ public class LearnerController {
     public void enrollInCourse(Context ctx) {
         try {
             String courseId = ctx.pathParam("id");
-            Map<String, Object> requestBody = ctx.bodyAsClass(Map.class);
-            String username = (String) requestBody.get("username");
+            EnrollmentRequest request = ctx.bodyAsClass(EnrollmentRequest.class);
+            String username = request.username();
             
             if (courseId == null || username == null) {
                 ctx.status(400).json(Map.of("error", "Course ID and username are required"));
                 return;
             }
             
-            // Check if the course exists
-            if (!courseService.courseExists(courseId)) {
-                ctx.status(404).json(Map.of("error", "Course not found"));
-                return;
-            }
-            
-            // Check if user exists
-            if (!userService.userExists(username)) {
-                ctx.status(404).json(Map.of("error", "User not found"));
+            if (!sessionAllows(ctx, username)) {
                 return;
             }
             
-            boolean enrolled = learnerService.enrollInCourse(username, courseId);
-            
-            if (!enrolled) {
-                ctx.status(409).json(Map.of("error", "User is already enrolled in this course"));
-                return;
-            }
-            
-            // Get the current date as enrollment date
-            String enrollmentDate = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'").format(new Date());
-            
-            ctx.status(200).json(Map.of(
-                "message", "Successfully enrolled in course",
-                "enrollmentDate", enrollmentDate
-            ));
+            ctx.future(() -> courseService.courseExistsAsync(courseId).thenCompose(courseFound -> {
+                // Check if the course exists
+                if (!courseFound) {
+                    ctx.status(404).json(Map.of("error", "Course not found"));
+                    return CompletableFuture.completedFuture(null);
+                }
+                
+                return learnerRecord(ctx, username).thenCompose(record -> {
+                    // Check if user exists
+                    if (record == null) {
+                        ctx.status(404).json(Map.of("error", "User not found"));
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    
+                    return learnerService.enrollInCourseAsync(record, courseId).thenAccept(enrolled -> {
+                        if (!enrolled) {
+                            ctx.status(409).json(Map.of("error", "User is already enrolled in this course"));
+                            return;
+                        }
+                        
+                        // Get the current date as enrollment date
+                        String enrollmentDate = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'").format(new Date());
+                        
+                        ctx.status(200).json(new EnrollmentResponse("Successfully enrolled in course", enrollmentDate));
+                    });
+                });
+            }).exceptionally(e -> fail(ctx, "Failed to enroll in course: ", e)));
             
         } catch (Exception e) {
             e.printStackTrace();
@@ -99,29 +159,14 @@ public class LearnerController {
             String courseId = ctx.pathParam("courseId");
             
             // Parse request body
-            Map<String, Object> progressData = ctx.bodyAsClass(Map.class);
+            ProgressUpdate progressData = ctx.bodyAsClass(ProgressUpdate.class);
             
             if (username == null || courseId == null) {
                 ctx.status(400).json(Map.of("error", "Username and courseId are required"));
                 return;
             }
             
-            // Check if user exists
-            if (!userService.userExists(username)) {
-                ctx.status(404).json(Map.of("error", "User not found"));
-                return;
-            }
-            
-            // Check if course exists
-            if (!courseService.courseExists(courseId)) {
-                ctx.status(404).json(Map.of("error", "Course not found"));
-                return;
-            }
-            
-            // Check if the user is enrolled in the course
-            List<String> enrollments = learnerService.getEnrollments(username);
-            if (!enrollments.contains(courseId)) {
-                ctx.status(403).json(Map.of("error", "User is not enrolled in this course"));
+            if (!sessionAllows(ctx, username)) {
                 return;
             }
             
@@ -129,38 +174,29 @@ public class LearnerController {
             CourseProgress progress = new CourseProgress(courseId, username);
             
             // Extract progress fields
-            if (progressData.containsKey("completedLessons")) {
-                progress.setCompletedLessons((List<String>) progressData.get("completedLessons"));
+            if (progressData.completedLessons() != null) {
+                progress.setCompletedLessons(progressData.completedLessons());
             }
             
-            if (progressData.containsKey("quizAnswers")) {
-                progress.setQuizAnswers((Map<String, Object>) progressData.get("quizAnswers"));
+            if (progressData.quizAnswers() != null) {
+                progress.setQuizAnswers(progressData.quizAnswers());
             }
             
-            if (progressData.containsKey("quizSubmitted")) {
-                progress.setQuizSubmitted((Map<String, Object>) progressData.get("quizSubmitted"));
+            if (progressData.quizSubmitted() != null) {
+                progress.setQuizSubmitted(progressData.quizSubmitted());
             }
             
-            if (progressData.containsKey("quizResults")) {
-                progress.setQuizResults((Map<String, Object>) progressData.get("quizResults"));
+            if (progressData.quizResults() != null) {
+                progress.setQuizResults(progressData.quizResults());
             }
             
-            if (progressData.containsKey("certificateUnlocked")) {
-                progress.setCertificateUnlocked((boolean) progressData.get("certificateUnlocked"));
-            }
-            
-            if (progressData.containsKey("overallProgress")) {
-                progress.setOverallProgress(((Number) progressData.get("overallProgress")).intValue());
-            }
+            // certificateUnlocked and overallProgress are worked out by the server
             
-            // Update the progress
-            learnerService.updateCourseProgress(progress);
-            
-            // Return success response
-            ctx.status(200).json(Map.of(
-                "message", "Progress updated successfully",
-                "timestamp", progress.getLastUpdated()
-            ));
+            ctx.future(() -> whenEnrolled(ctx, username, courseId, () ->
+                progressStore.updateCourseProgressAsync(progress).thenAccept(status ->
+                    // Return success response
+                    ctx.status(200).json(progressUpdated(status))))
+                .exceptionally(e -> fail(ctx, "Failed to update progress: ", e)));
             
         } catch (Exception e) {
             e.printStackTrace();
@@ -168,46 +204,210 @@ public class LearnerController {
         }
     }
     
-    public void getCourseProgress(Context ctx) {
+    public void patchCourseProgress(Context ctx) {
         try {
             // Get path parameters
             String username = ctx.pathParam("username");
             String courseId = ctx.pathParam("courseId");
             
+            // Parse request body
+            ProgressPatch patch = ctx.bodyAsClass(ProgressPatch.class);
+            
             if (username == null || courseId == null) {
                 ctx.status(400).json(Map.of("error", "Username and courseId are required"));
                 return;
             }
             
-            // Check if user exists
-            if (!userService.userExists(username)) {
-                ctx.status(404).json(Map.of("error", "User not found"));
+            if (patch == null || patch.isEmpty()) {
+                ctx.status(400).json(Map.of("error", "No progress changes given"));
                 return;
             }
             
-            // Check if course exists
-            if (!courseService.courseExists(courseId)) {
-                ctx.status(404).json(Map.of("error", "Course not found"));
+            // Lesson and quiz ids become database keys
+            if (!allValidKeys(patch.completedLessons()) || !allValidKeys(patch.uncompletedLessons())
+                    || !allValidKeys(patch.quizAnswers()) || !allValidKeys(patch.quizSubmitted())
+                    || !allValidKeys(patch.quizResults())) {
+                ctx.status(400).json(Map.of("error", "Invalid lesson or quiz id"));
                 return;
             }
             
-            // Get the progress data
-            CourseProgress progress = learnerService.getCourseProgress(username, courseId);
+            if (!sessionAllows(ctx, username)) {
+                return;
+            }
             
-            Map<String, Object> progressMap = new HashMap<>();
-            progressMap.put("completedLessons", progress.getCompletedLessons());
-            progressMap.put("quizAnswers", progress.getQuizAnswers());
-            progressMap.put("quizSubmitted", progress.getQuizSubmitted());
-            progressMap.put("quizResults", progress.getQuizResults());
-            progressMap.put("certificateUnlocked", progress.isCertificateUnlocked());
-            progressMap.put("overallProgress", progress.getOverallProgress());
-            progressMap.put("lastUpdated", progress.getLastUpdated());
+            ctx.future(() -> whenEnrolled(ctx, username, courseId, () ->
+                progressStore.patchCourseProgressAsync(username, courseId, patch).thenAccept(status ->
+                    ctx.status(200).json(progressUpdated(status))))
+                .exceptionally(e -> fail(ctx, "Failed to update progress: ", e)));
             
-            ctx.status(200).json(progressMap);
+        } catch (Exception e) {
+            e.printStackTrace();
+            ctx.status(500).json(Map.of("error", "Failed to update progress: " + e.getMessage()));
+        }
+    }
+    
+    public void getCourseProgress(Context ctx) {
+        try {
+            // Get path parameters
+            String username = ctx.pathParam("username");
+            String courseId = ctx.pathParam("courseId");
+            
+            if (username == null || courseId == null) {
+                ctx.status(400).json(Map.of("error", "Username and courseId are required"));
+                return;
+            }
+            
+            if (!sessionAllows(ctx, username)) {
+                return;
+            }
+            
+            // The learner check and the course check don't depend on each other
+            CompletableFuture<Boolean> courseExists = courseService.courseExistsAsync(courseId);
+            
+            // A session token already proves the learner exists (deleted learners' tokens are
+            // revoked), so nothing needs reading
+            CompletableFuture<Boolean> learnerExists = SessionFilter.sessionUser(ctx) != null
+                ? CompletableFuture.completedFuture(true)
+                : userService.userExistsAsync(username);
+            
+            ctx.future(() -> learnerExists.thenCompose(learnerFound -> {
+                // Check if user exists
+                if (!learnerFound) {
+                    ctx.status(404).json(Map.of("error", "User not found"));
+                    return CompletableFuture.completedFuture(null);
+                }
+                
+                return courseExists.thenCompose(courseFound -> {
+                    // Check if course exists
+                    if (!courseFound) {
+                        ctx.status(404).json(Map.of("error", "Course not found"));
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    
+                    // Get the progress data
+                    return learnerService.getCourseProgressAsync(username, courseId).thenAccept(progress ->
+                        ctx.status(200).json(ProgressResponse.from(progress)));
+                });
+            }).exceptionally(e -> fail(ctx, "Failed to retrieve progress: ", e)));
             
         } catch (Exception e) {
             e.printStackTrace();
             ctx.status(500).json(Map.of("error", "Failed to retrieve progress: " + e.getMessage()));
         }
     }
+    
+    public void getProgressMetrics(Context ctx) {
+        ctx.json(ProgressWriteBuffer.getInstance().getMetrics());
+    }
+    
+    private void writeEnrolledCourses(Context ctx, LearnerRecord record, List<CourseSummary> summaries) {
+        String now = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'").format(new Date());
+        
+        JsonStreamWriter.writeArray(ctx, summaries.iterator(), (generator, course) -> {
+            String lastAccessed = record.getLastAccessed(course.getId());
+            
+            generator.writeStartObject();
+            generator.writeStringField("id", course.getId());
+            generator.writeStringField("title", course.getTitle());
+            generator.writeStringField("description", course.getDescription());
+            generator.writeStringField("category", course.getCategory());
+            generator.writeStringField("thumbnailUrl", course.getThumbnailUrl());
+            generator.writeStringField("creatorUsername", course.getCreatorUsername());
+            JsonStreamWriter.writeNullableNumberField(generator, "createdAt", course.getCreatedAt());
+            generator.writeStringField("certificateLink", course.getCertificateLink());
+            generator.writeNumberField("students", courseService.getStudentCount(course));
+            generator.writeNumberField("progress", record.getProgress(course.getId()));
+            generator.writeStringField("lastAccessed", lastAccessed != null ? lastAccessed : now);
+            generator.writeEndObject();
+        });
+    }
+    
+    // Requests carrying a session token may only act for the learner it was issued to
+    private boolean sessionAllows(Context ctx, String username) {
+        String sessionUser = SessionFilter.sessionUser(ctx);
+        if (sessionUser != null && !sessionUser.equals(username)) {
+            ctx.status(403).json(Map.of("error", "Session does not belong to this user"));
+            return false;
+        }
+        return true;
+    }
+    
+    private static Map<String, Object> progressUpdated(ProgressStatus status) {
+        return Map.of(
+            "message", "Progress updated successfully",
+            "timestamp", status.lastUpdated(),
+            "overallProgress", status.overallProgress(),
+            "certificateUnlocked", status.certificateUnlocked()
+        );
+    }
+    
+    // Run a progress write once the learner, the course and the enrollment are confirmed,
+    // answering 404 or 403 otherwise
+    private CompletableFuture<Void> whenEnrolled(Context ctx, String username, String courseId,
+                                                 Supplier<CompletableFuture<Void>> write) {
+        // The learner check and the course check don't depend on each other
+        CompletableFuture<Boolean> courseExists = progressStore.courseExistsAsync(courseId);
+        
+        // Membership is the single enrollments/{courseId} entry. A session token already proves
+        // the learner exists; otherwise that is checked from their email alone.
+        CompletableFuture<Boolean> enrolled = SessionFilter.sessionUser(ctx) != null
+            ? progressStore.isEnrolledAsync(username, courseId)
+            : progressStore.userExistsAsync(username).thenCompose(exists -> exists
+                ? progressStore.isEnrolledAsync(username, courseId)
+                : CompletableFuture.completedFuture(null));
+        
+        return enrolled.thenCompose(isEnrolled -> {
+            // Check if user exists
+            if (isEnrolled == null) {
+                ctx.status(404).json(Map.of("error", "User not found"));
+                return CompletableFuture.completedFuture(null);
+            }
+            
+            return courseExists.thenCompose(courseFound -> {
+                // Check if course exists
+                if (!courseFound) {
+                    ctx.status(404).json(Map.of("error", "Course not found"));
+                    return CompletableFuture.completedFuture(null);
+                }
+                
+                // Check if the user is enrolled in the course
+                if (!isEnrolled) {
+                    ctx.status(403).json(Map.of("error", "User is not enrolled in this course"));
+                    return CompletableFuture.completedFuture(null);
+                }
+                
+                return write.get();
+            });
+        });
+    }
+    
+    private static boolean allValidKeys(List<String> keys) {
+        return keys == null || keys.stream().allMatch(LearnerController::isValidKey);
+    }
+    
+    private static boolean allValidKeys(Map<String, Object> values) {
+        return values == null || values.keySet().stream().allMatch(LearnerController::isValidKey);
+    }
+    
+    private static boolean isValidKey(String key) {
+        return key != null && !key.isEmpty() && key.chars().noneMatch(c -> ".#$[]/".indexOf(c) >= 0);
+    }
+    
+    // learners/{username} is read at most once per request; every check in the handler shares it
+    private CompletableFuture<LearnerRecord> learnerRecord(Context ctx, String username) {
+        String key = "learnerRecord:" + username;
+        CompletableFuture<LearnerRecord> record = ctx.attribute(key);
+        if (record == null) {
+            record = learnerService.loadLearnerRecordAsync(username);
+            ctx.attribute(key, record);
+        }
+        return record;
+    }
+    
+    private Void fail(Context ctx, String message, Throwable e) {
+        Throwable cause = FirebaseFutures.unwrap(e);
+        cause.printStackTrace();
+        ctx.status(500).json(Map.of("error", message + cause.getMessage()));
+        return null;
+    }
 }
\ No newline at end of file
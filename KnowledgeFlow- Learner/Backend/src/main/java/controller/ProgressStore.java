@@ -0,0 +1,53 @@
+package controller;
+
+import model.CourseProgress;
+import model.ProgressPatch;
+import model.ProgressStatus;
+import service.CourseService;
+import service.LearnerService;
+import service.UserService;
+
+import java.util.concurrent.CompletableFuture;
+
+// The database calls behind the progress write handlers: the enrollment checks and the writes
+// themselves. The server uses the services; handler tests hand LearnerController a stub.
+interface ProgressStore {
+    CompletableFuture<Boolean> userExistsAsync(String username);
+    
+    CompletableFuture<Boolean> courseExistsAsync(String courseId);
+    
+    CompletableFuture<Boolean> isEnrolledAsync(String username, String courseId);
+    
+    CompletableFuture<ProgressStatus> updateCourseProgressAsync(CourseProgress progress);
+    
+    CompletableFuture<ProgressStatus> patchCourseProgressAsync(String username, String courseId, ProgressPatch patch);
+    
+    static ProgressStore of(LearnerService learnerService, CourseService courseService, UserService userService) {
+        return new ProgressStore() {
+            @Override
+            public CompletableFuture<Boolean> userExistsAsync(String username) {
+                return userService.userExistsAsync(username);
+            }
+            
+            @Override
+            public CompletableFuture<Boolean> courseExistsAsync(String courseId) {
+                return courseService.courseExistsAsync(courseId);
+            }
+            
+            @Override
+            public CompletableFuture<Boolean> isEnrolledAsync(String username, String courseId) {
+                return learnerService.isEnrolledAsync(username, courseId);
+            }
+            
+            @Override
+            public CompletableFuture<ProgressStatus> updateCourseProgressAsync(CourseProgress progress) {
+                return learnerService.updateCourseProgressAsync(progress);
+            }
+            
+            @Override
+            public CompletableFuture<ProgressStatus> patchCourseProgressAsync(String username, String courseId, ProgressPatch patch) {
+                return learnerService.patchCourseProgressAsync(username, courseId, patch);
+            }
+        };
+    }
+}
\ No newline at end of file
@@ -0,0 +1,57 @@
+package controller;
+
+import config.ServerConfig;
+import io.javalin.http.Context;
+import io.javalin.http.HandlerType;
+import io.javalin.http.UnauthorizedResponse;
+import service.RevokedSessions;
+import service.SessionTokens;
+
+// Before-handler for the learner routes: checks the "Authorization: Bearer <token>" header
+// issued at login and records whose request it is, so a learner can only act for themselves
+// and handlers can trust the username without reading learners/{username}. Tokens of deleted
+// learners are turned away through RevokedSessions.
+//
+// The frontend stores the token from /login and sends it on these requests (src/session.js).
+// Requests without a token are still let through for older clients unless
+// -Dkf.auth.required=true, which deployments should set once every client sends one; a token
+// that is present but invalid, expired or revoked is always rejected.
+public class SessionFilter {
+    private static final String USERNAME_ATTRIBUTE = "sessionUsername";
+    
+    private final SessionTokens tokens;
+    private final RevokedSessions revoked;
+    private final boolean required;
+    
+    public SessionFilter() {
+        this.tokens = SessionTokens.getInstance();
+        this.revoked = RevokedSessions.getInstance();
+        this.required = ServerConfig.getBoolean("kf.auth.required", false);
+    }
+    
+    public void handle(Context ctx) {
+        // CORS preflights carry no credentials
+        if (ctx.method() == HandlerType.OPTIONS) {
+            return;
+        }
+        
+        String authorization = ctx.header("Authorization");
+        if (authorization == null || !authorization.startsWith("Bearer ")) {
+            if (required) {
+                throw new UnauthorizedResponse("Session token required");
+            }
+            return;
+        }
+        
+        SessionTokens.Session session = tokens.verifySession(authorization.substring("Bearer ".length()).trim());
+        if (session == null || revoked.isRevoked(session.username(), session.issuedAt())) {
+            throw new UnauthorizedResponse("Invalid or expired session token");
+        }
+        ctx.attribute(USERNAME_ATTRIBUTE, session.username());
+    }
+    
+    // The username the request's token was issued to, or null when it came without one
+    static String sessionUser(Context ctx) {
+        return ctx.attribute(USERNAME_ATTRIBUTE);
+    }
+}
\ No newline at end of file
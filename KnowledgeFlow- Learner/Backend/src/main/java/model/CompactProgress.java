@@ -0,0 +1,220 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// A learner's progress in one course packed against its CourseLayout: completed lessons are bits
+// by lesson position, and each quiz is one byte holding the chosen option, whether it was
+// submitted and whether the answer was right. A few dozen bytes instead of lists and maps of id
+// strings, and the number of completed items is a popcount.
+//
+// Only progress that fits converts: lesson and quiz ids the course has, options 0-30 as answers,
+// booleans as submitted flags and results. from() returns null for anything else, and such
+// progress is simply kept in its JSON shape; fromKnown() keeps what fits, for counting.
+//
+// The submitted quiz count is kept as quizzes change, so the progress after an event is known
+// without looking at the other lessons and quizzes.
+public class CompactProgress {
+    private static final int ANSWER_MASK = 0x1F;
+    private static final int MAX_ANSWER = ANSWER_MASK - 1;
+    private static final int SUBMITTED = 0x20;
+    private static final int HAS_RESULT = 0x40;
+    private static final int CORRECT = 0x80;
+    
+    private final int lessonCount;
+    private final BitSet lessons;
+    private final byte[] quizzes;
+    private int submittedQuizzes;
+    private boolean certificateUnlocked;
+    private String lastUpdated;
+    
+    private CompactProgress(int lessonCount, BitSet lessons, byte[] quizzes) {
+        this.lessonCount = lessonCount;
+        this.lessons = lessons;
+        this.quizzes = quizzes;
+    }
+    
+    public static CompactProgress empty(CourseLayout layout) {
+        return new CompactProgress(layout.getLessonCount(), new BitSet(layout.getLessonCount()), new byte[layout.getQuizCount()]);
+    }
+    
+    public static CompactProgress from(CourseProgress progress, CourseLayout layout) {
+        CompactProgress compact = empty(layout);
+        return compact.load(progress, layout) ? compact : null;
+    }
+    
+    // Everything in the progress that fits, skipping the rest
+    public static CompactProgress fromKnown(CourseProgress progress, CourseLayout layout) {
+        CompactProgress compact = empty(layout);
+        compact.load(progress, layout);
+        return compact;
+    }
+    
+    private boolean load(CourseProgress progress, CourseLayout layout) {
+        boolean fits = true;
+        for (String lessonId : progress.getCompletedLessons()) {
+            fits &= setLessonCompleted(layout, lessonId, true);
+        }
+        for (Map.Entry<String, Object> answer : progress.getQuizAnswers().entrySet()) {
+            fits &= setQuizAnswer(layout, answer.getKey(), answer.getValue());
+        }
+        for (Map.Entry<String, Object> submitted : progress.getQuizSubmitted().entrySet()) {
+            fits &= setQuizSubmitted(layout, submitted.getKey(), submitted.getValue());
+        }
+        for (Map.Entry<String, Object> result : progress.getQuizResults().entrySet()) {
+            fits &= setQuizResult(layout, result.getKey(), result.getValue());
+        }
+        certificateUnlocked = progress.isCertificateUnlocked();
+        lastUpdated = progress.getLastUpdated();
+        return fits;
+    }
+    
+    // Back to the JSON shape, with overallProgress counted from the bits
+    public CourseProgress toCourseProgress(String courseId, String username, CourseLayout layout) {
+        CourseProgress progress = new CourseProgress(courseId, username);
+        
+        List<String> completedLessons = new ArrayList<>(lessons.cardinality());
+        for (int i = lessons.nextSetBit(0); i >= 0; i = lessons.nextSetBit(i + 1)) {
+            completedLessons.add(layout.getLessonId(i));
+        }
+        progress.setCompletedLessons(completedLessons);
+        
+        Map<String, Object> quizAnswers = new HashMap<>();
+        Map<String, Object> quizSubmitted = new HashMap<>();
+        Map<String, Object> quizResults = new HashMap<>();
+        for (int i = 0; i < quizzes.length; i++) {
+            int state = quizzes[i] & 0xFF;
+            String quizId = layout.getQuizId(i);
+            if ((state & ANSWER_MASK) != 0) {
+                quizAnswers.put(quizId, (state & ANSWER_MASK) - 1);
+            }
+            if ((state & SUBMITTED) != 0) {
+                quizSubmitted.put(quizId, true);
+            }
+            if ((state & HAS_RESULT) != 0) {
+                quizResults.put(quizId, (state & CORRECT) != 0);
+            }
+        }
+        progress.setQuizAnswers(quizAnswers);
+        progress.setQuizSubmitted(quizSubmitted);
+        progress.setQuizResults(quizResults);
+        
+        progress.setCertificateUnlocked(certificateUnlocked);
+        progress.setOverallProgress(getOverallProgress());
+        progress.setLastUpdated(lastUpdated);
+        return progress;
+    }
+    
+    public CompactProgress copy() {
+        CompactProgress copy = new CompactProgress(lessonCount, (BitSet) lessons.clone(), quizzes.clone());
+        copy.submittedQuizzes = submittedQuizzes;
+        copy.certificateUnlocked = certificateUnlocked;
+        copy.lastUpdated = lastUpdated;
+        return copy;
+    }
+    
+    public int getCompletedLessonCount() {
+        return lessons.cardinality();
+    }
+    
+    public int getSubmittedQuizCount() {
+        return submittedQuizzes;
+    }
+    
+    // Every lesson completed and every quiz submitted, right or wrong
+    public boolean isComplete() {
+        return getCompletedLessonCount() == lessonCount && submittedQuizzes == quizzes.length;
+    }
+    
+    // Once unlocked the certificate stays unlocked, even if lessons are marked undone later
+    public void unlockCertificateIfComplete() {
+        if (isComplete()) {
+            certificateUnlocked = true;
+        }
+    }
+    
+    // Completed lessons and submitted quizzes as a percentage of all of them, the way the
+    // course page counts it
+    public int getOverallProgress() {
+        int total = lessonCount + quizzes.length;
+        if (total == 0) {
+            return 100;
+        }
+        return Math.round((getCompletedLessonCount() + getSubmittedQuizCount()) * 100f / total);
+    }
+    
+    // The setters return false when the value doesn't fit the compact form
+    
+    public boolean setLessonCompleted(CourseLayout layout, String lessonId, boolean completed) {
+        int ordinal = layout.lessonOrdinal(lessonId);
+        if (ordinal < 0) {
+            return false;
+        }
+        lessons.set(ordinal, completed);
+        return true;
+    }
+    
+    public boolean setQuizAnswer(CourseLayout layout, String quizId, Object answer) {
+        int ordinal = layout.quizOrdinal(quizId);
+        if (ordinal < 0) {
+            return false;
+        }
+        int value;
+        if (answer == null) {
+            value = 0;
+        } else if (answer instanceof Number number && number.doubleValue() == number.intValue()
+                && number.intValue() >= 0 && number.intValue() <= MAX_ANSWER) {
+            value = number.intValue() + 1;
+        } else {
+            return false;
+        }
+        quizzes[ordinal] = (byte) ((quizzes[ordinal] & ~ANSWER_MASK) | value);
+        return true;
+    }
+    
+    public boolean setQuizSubmitted(CourseLayout layout, String quizId, Object submitted) {
+        int ordinal = layout.quizOrdinal(quizId);
+        if (ordinal < 0 || (submitted != null && !(submitted instanceof Boolean))) {
+            return false;
+        }
+        boolean wasSubmitted = (quizzes[ordinal] & SUBMITTED) != 0;
+        boolean isSubmitted = Boolean.TRUE.equals(submitted);
+        if (wasSubmitted != isSubmitted) {
+            quizzes[ordinal] = (byte) (isSubmitted ? quizzes[ordinal] | SUBMITTED : quizzes[ordinal] & ~SUBMITTED);
+            submittedQuizzes += isSubmitted ? 1 : -1;
+        }
+        return true;
+    }
+    
+    public boolean setQuizResult(CourseLayout layout, String quizId, Object result) {
+        int ordinal = layout.quizOrdinal(quizId);
+        if (ordinal < 0 || (result != null && !(result instanceof Boolean))) {
+            return false;
+        }
+        int state = quizzes[ordinal] & ~(HAS_RESULT | CORRECT);
+        if (result != null) {
+            state |= HAS_RESULT | ((Boolean) result ? CORRECT : 0);
+        }
+        quizzes[ordinal] = (byte) state;
+        return true;
+    }
+    
+    public boolean isCertificateUnlocked() {
+        return certificateUnlocked;
+    }
+    
+    public void setCertificateUnlocked(boolean certificateUnlocked) {
+        this.certificateUnlocked = certificateUnlocked;
+    }
+    
+    public String getLastUpdated() {
+        return lastUpdated;
+    }
+    
+    public void setLastUpdated(String lastUpdated) {
+        this.lastUpdated = lastUpdated;
+    }
+}
\ No newline at end of file
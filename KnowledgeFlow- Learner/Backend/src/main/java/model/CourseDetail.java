@@ -0,0 +1,32 @@
+package model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+// Everything GET /courses/{id} returns; fields the course doesn't have are left out
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CourseDetail(
+    String id,
+    String title,
+    String description,
+    String category,
+    String thumbnailUrl,
+    String creatorUsername,
+    Long createdAt,
+    String certificateLink,
+    long students,
+    List<LessonItem> lessons,
+    List<QuizItem> quizzes
+) {
+    public CourseDetail withStudents(long students) {
+        return new CourseDetail(id, title, description, category, thumbnailUrl, creatorUsername, createdAt,
+            certificateLink, students, lessons, quizzes);
+    }
+    
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record LessonItem(String id, String title, String content, Integer order, String videoUrl) {}
+    
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record QuizItem(String id, String question, List<String> options, Integer correctOption) {}
+}
\ No newline at end of file
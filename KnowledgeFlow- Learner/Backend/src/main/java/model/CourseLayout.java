@@ -0,0 +1,70 @@
+package model;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+// A course's lessons and quizzes by position: lessons in outline order, quizzes by id.
+// CompactProgress refers to lessons and quizzes by these positions, so it is only read with the
+// layout it was built against.
+public class CourseLayout {
+    private final List<String> lessonIds;
+    private final List<String> quizIds;
+    private final Map<String, Integer> lessonOrdinals = new HashMap<>();
+    private final Map<String, Integer> quizOrdinals = new HashMap<>();
+    
+    public CourseLayout(List<String> lessonIds, List<String> quizIds) {
+        this.lessonIds = List.copyOf(lessonIds);
+        this.quizIds = quizIds.stream().sorted().toList();
+        for (int i = 0; i < this.lessonIds.size(); i++) {
+            lessonOrdinals.put(this.lessonIds.get(i), i);
+        }
+        for (int i = 0; i < this.quizIds.size(); i++) {
+            quizOrdinals.put(this.quizIds.get(i), i);
+        }
+    }
+    
+    public int getLessonCount() {
+        return lessonIds.size();
+    }
+    
+    public int getQuizCount() {
+        return quizIds.size();
+    }
+    
+    public String getLessonId(int ordinal) {
+        return lessonIds.get(ordinal);
+    }
+    
+    public String getQuizId(int ordinal) {
+        return quizIds.get(ordinal);
+    }
+    
+    // -1 if the course has no such lesson
+    public int lessonOrdinal(String lessonId) {
+        return lessonOrdinals.getOrDefault(lessonId, -1);
+    }
+    
+    // -1 if the course has no such quiz
+    public int quizOrdinal(String quizId) {
+        return quizOrdinals.getOrDefault(quizId, -1);
+    }
+    
+    // Same lessons in the same order and the same quizzes
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CourseLayout other)) {
+            return false;
+        }
+        return lessonIds.equals(other.lessonIds) && quizIds.equals(other.quizIds);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(lessonIds, quizIds);
+    }
+}
\ No newline at end of file
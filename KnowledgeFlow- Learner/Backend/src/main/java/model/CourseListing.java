@@ -0,0 +1,12 @@
+package model;
+
+// A course as listed by GET /api/courses
+public record CourseListing(
+    String id,
+    String title,
+    String description,
+    String creatorUsername,
+    String thumbnailUrl,
+    String category,
+    long students
+) {}
\ No newline at end of file
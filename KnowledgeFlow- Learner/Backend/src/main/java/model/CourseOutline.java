@@ -0,0 +1,25 @@
+package model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+// What GET /courses/{id}/outline returns: the course fields and its table of contents, without
+// lesson bodies or quiz questions. Those are fetched one at a time as the learner opens them.
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CourseOutline(
+    String id,
+    String title,
+    String description,
+    String category,
+    String thumbnailUrl,
+    String creatorUsername,
+    Long createdAt,
+    String certificateLink,
+    long students,
+    List<LessonEntry> lessons,
+    List<String> quizIds
+) {
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record LessonEntry(String id, String title, Integer order, String videoUrl) {}
+}
\ No newline at end of file
@@ -0,0 +1,79 @@
+package model;
+
+// The listing fields of a course, without lesson and quiz bodies. Instances are immutable so the
+// catalog can hand them to concurrent requests without copying.
+public class CourseSummary {
+    private final String id;
+    private final String title;
+    private final String description;
+    private final String category;
+    private final String thumbnailUrl;
+    private final String creatorUsername;
+    private final Long createdAt;
+    private final String certificateLink;
+    private final Long students;
+    private final int lessonCount;
+    private final int quizCount;
+    
+    public CourseSummary(String id, String title, String description, String category, String thumbnailUrl,
+                         String creatorUsername, Long createdAt, String certificateLink, Long students,
+                         int lessonCount, int quizCount) {
+        this.id = id;
+        this.title = title;
+        this.description = description;
+        this.category = category;
+        this.thumbnailUrl = thumbnailUrl;
+        this.creatorUsername = creatorUsername;
+        this.createdAt = createdAt;
+        this.certificateLink = certificateLink;
+        this.students = students;
+        this.lessonCount = lessonCount;
+        this.quizCount = quizCount;
+    }
+    
+    // Getters
+    public String getId() {
+        return id;
+    }
+    
+    public String getTitle() {
+        return title;
+    }
+    
+    public String getDescription() {
+        return description;
+    }
+    
+    public String getCategory() {
+        return category;
+    }
+    
+    public String getThumbnailUrl() {
+        return thumbnailUrl;
+    }
+    
+    public String getCreatorUsername() {
+        return creatorUsername;
+    }
+    
+    public Long getCreatedAt() {
+        return createdAt;
+    }
+    
+    public String getCertificateLink() {
+        return certificateLink;
+    }
+    
+    // Stored count only; CourseService adds enrollments that haven't been flushed yet
+    public Long getStudents() {
+        return students;
+    }
+    
+    public int getLessonCount() {
+        return lessonCount;
+    }
+    
+    public int getQuizCount() {
+        return quizCount;
+    }
+}
\ No newline at end of file
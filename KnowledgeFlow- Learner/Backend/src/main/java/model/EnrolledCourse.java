@@ -0,0 +1,16 @@
+package model;
+
+// A course on the learner dashboard, with the learner's progress in it
+public record EnrolledCourse(
+    String id,
+    String title,
+    String description,
+    String category,
+    String thumbnailUrl,
+    String creatorUsername,
+    Long createdAt,
+    String certificateLink,
+    long students,
+    int progress,
+    String lastAccessed
+) {}
\ No newline at end of file
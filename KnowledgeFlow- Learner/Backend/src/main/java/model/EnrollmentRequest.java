@@ -0,0 +1,4 @@
+package model;
+
+// Body of POST /api/courses/{id}/enroll
+public record EnrollmentRequest(String username) {}
\ No newline at end of file
@@ -0,0 +1,3 @@
+package model;
+
+public record EnrollmentResponse(String message, String enrollmentDate) {}
\ No newline at end of file
@@ -0,0 +1,91 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Everything the learner endpoints need from learners/{username}, loaded with a single read
+public class LearnerRecord {
+    private String username;
+    private String email;
+    private Set<String> enrollments;
+    private Map<String, Integer> progress;
+    private Map<String, String> lastAccessed;
+    private Map<String, String> enrollmentDates;
+    
+    public LearnerRecord() {
+        this.enrollments = new LinkedHashSet<>();
+        this.progress = new HashMap<>();
+        this.lastAccessed = new HashMap<>();
+        this.enrollmentDates = new HashMap<>();
+    }
+    
+    public LearnerRecord(String username) {
+        this();
+        this.username = username;
+    }
+    
+    // Getters and setters
+    public String getUsername() {
+        return username;
+    }
+    
+    public void setUsername(String username) {
+        this.username = username;
+    }
+    
+    public String getEmail() {
+        return email;
+    }
+    
+    public void setEmail(String email) {
+        this.email = email;
+    }
+    
+    public List<String> getEnrollments() {
+        return new ArrayList<>(enrollments);
+    }
+    
+    public void addEnrollment(String courseId) {
+        this.enrollments.add(courseId);
+    }
+    
+    public boolean isEnrolled(String courseId) {
+        return enrollments.contains(courseId);
+    }
+    
+    public Map<String, Integer> getProgress() {
+        return progress;
+    }
+    
+    public int getProgress(String courseId) {
+        return progress.getOrDefault(courseId, 0);
+    }
+    
+    public void setProgress(String courseId, int value) {
+        this.progress.put(courseId, value);
+    }
+    
+    public Map<String, String> getLastAccessed() {
+        return lastAccessed;
+    }
+    
+    public String getLastAccessed(String courseId) {
+        return lastAccessed.get(courseId);
+    }
+    
+    public void setLastAccessed(String courseId, String value) {
+        this.lastAccessed.put(courseId, value);
+    }
+    
+    public Map<String, String> getEnrollmentDates() {
+        return enrollmentDates;
+    }
+    
+    public void setEnrollmentDate(String courseId, String value) {
+        this.enrollmentDates.put(courseId, value);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,29 @@
+package model;
+
+import java.util.List;
+import java.util.Map;
+
+// Body of PATCH /api/users/{username}/courses/{courseId}/progress: only what just happened, e.g.
+// {"completedLessons": ["lesson1"]} or {"quizAnswers": {"quiz1": 2}}. Each lesson and quiz
+// listed is written on its own, so entries already stored stay as they are. overallProgress and
+// certificateUnlocked are worked out by the server.
+public record ProgressPatch(
+    List<String> completedLessons,
+    List<String> uncompletedLessons,
+    Map<String, Object> quizAnswers,
+    Map<String, Object> quizSubmitted,
+    Map<String, Object> quizResults
+) {
+    public boolean isEmpty() {
+        return isEmpty(completedLessons) && isEmpty(uncompletedLessons)
+            && isEmpty(quizAnswers) && isEmpty(quizSubmitted) && isEmpty(quizResults);
+    }
+    
+    private static boolean isEmpty(List<?> list) {
+        return list == null || list.isEmpty();
+    }
+    
+    private static boolean isEmpty(Map<?, ?> map) {
+        return map == null || map.isEmpty();
+    }
+}
\ No newline at end of file
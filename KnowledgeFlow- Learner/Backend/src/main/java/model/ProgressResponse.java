@@ -0,0 +1,26 @@
+package model;
+
+import java.util.List;
+import java.util.Map;
+
+// Body of GET /api/users/{username}/courses/{courseId}/progress
+public record ProgressResponse(
+    List<String> completedLessons,
+    Map<String, Object> quizAnswers,
+    Map<String, Object> quizSubmitted,
+    Map<String, Object> quizResults,
+    boolean certificateUnlocked,
+    int overallProgress,
+    String lastUpdated
+) {
+    public static ProgressResponse from(CourseProgress progress) {
+        return new ProgressResponse(
+            progress.getCompletedLessons(),
+            progress.getQuizAnswers(),
+            progress.getQuizSubmitted(),
+            progress.getQuizResults(),
+            progress.isCertificateUnlocked(),
+            progress.getOverallProgress(),
+            progress.getLastUpdated());
+    }
+}
\ No newline at end of file
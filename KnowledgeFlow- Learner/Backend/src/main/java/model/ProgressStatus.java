@@ -0,0 +1,4 @@
+package model;
+
+// What a progress write leaves the course at, as worked out by the server
+public record ProgressStatus(int overallProgress, boolean certificateUnlocked, String lastUpdated) {}
\ No newline at end of file
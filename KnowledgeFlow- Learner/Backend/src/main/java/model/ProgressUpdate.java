@@ -0,0 +1,16 @@
+package model;
+
+import java.util.List;
+import java.util.Map;
+
+// Body of POST /api/users/{username}/courses/{courseId}/progress; fields left out are not changed.
+// certificateUnlocked and overallProgress are still accepted from older clients but ignored:
+// the server works them out from the lessons and quizzes.
+public record ProgressUpdate(
+    List<String> completedLessons,
+    Map<String, Object> quizAnswers,
+    Map<String, Object> quizSubmitted,
+    Map<String, Object> quizResults,
+    Boolean certificateUnlocked,
+    Integer overallProgress
+) {}
\ No newline at end of file
@@ -0,0 +1,182 @@
+package service;
+
+import com.google.firebase.database.*;
+import model.CourseSummary;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Resident copy of every course summary, kept current by a persistent ChildEventListener on
+// courses, so browsing is served from memory instead of downloading the courses tree per request.
+// Search goes through a CourseSearchIndex updated from the same events.
+//
+// Until the initial load has been delivered (or after the listener is cancelled) isReady() is
+// false and callers fall back to reading the database. Entries are keyed by course id, which
+// keeps the same order as a snapshot of courses.
+public class CourseCatalog {
+    private final DatabaseReference courseRef;
+    private final ConcurrentNavigableMap<String, CourseSummary> summaries = new ConcurrentSkipListMap<>();
+    private final CourseSearchIndex searchIndex = new CourseSearchIndex();
+    
+    private volatile boolean ready;
+    private volatile boolean connected;
+    private volatile long readyAt;
+    private volatile long lastEventAt;
+    private volatile long disconnectedSince;
+    private final AtomicLong added = new AtomicLong();
+    private final AtomicLong changed = new AtomicLong();
+    private final AtomicLong removed = new AtomicLong();
+    
+    private CourseCatalog() {
+        this.courseRef = FirebaseDatabase.getInstance().getReference("courses");
+        this.disconnectedSince = System.currentTimeMillis();
+        
+        courseRef.addChildEventListener(new ChildEventListener() {
+            @Override
+            public void onChildAdded(DataSnapshot snapshot, String previousChildName) {
+                CourseSummary summary = toSummary(snapshot);
+                summaries.put(snapshot.getKey(), summary);
+                searchIndex.update(summary);
+                ExistenceCache.courses().put(snapshot.getKey(), true);
+                added.incrementAndGet();
+                lastEventAt = System.currentTimeMillis();
+            }
+            
+            @Override
+            public void onChildChanged(DataSnapshot snapshot, String previousChildName) {
+                CourseSummary summary = toSummary(snapshot);
+                summaries.put(snapshot.getKey(), summary);
+                searchIndex.update(summary);
+                CourseDetailCache.getInstance().refresh(snapshot.getKey(), () -> CourseService.toCourseDetail(snapshot));
+                CourseLayouts.getInstance().refresh(snapshot.getKey(), () -> CourseService.toCourseLayout(snapshot));
+                changed.incrementAndGet();
+                lastEventAt = System.currentTimeMillis();
+            }
+            
+            @Override
+            public void onChildRemoved(DataSnapshot snapshot) {
+                summaries.remove(snapshot.getKey());
+                searchIndex.remove(snapshot.getKey());
+                CourseDetailCache.getInstance().invalidate(snapshot.getKey());
+                CourseLayouts.getInstance().invalidate(snapshot.getKey());
+                ExistenceCache.courses().put(snapshot.getKey(), false);
+                removed.incrementAndGet();
+                lastEventAt = System.currentTimeMillis();
+            }
+            
+            @Override
+            public void onChildMoved(DataSnapshot snapshot, String previousChildName) {
+                // Order comes from the map keys, nothing to do
+            }
+            
+            @Override
+            public void onCancelled(DatabaseError databaseError) {
+                ready = false;
+                System.err.println("Course catalog listener cancelled: " + databaseError.getMessage());
+            }
+        });
+        
+        // Child events for the existing data are delivered before value events at the same
+        // location, so once this fires the catalog holds every course
+        FirebaseFutures.read(courseRef).whenComplete((snapshot, error) -> {
+            if (error != null) {
+                System.err.println("Failed to load course catalog: " + error.getMessage());
+                return;
+            }
+            readyAt = System.currentTimeMillis();
+            ready = true;
+        });
+        
+        // Track the connection so staleness reflects how long we may have been missing events
+        FirebaseDatabase.getInstance().getReference(".info/connected").addValueEventListener(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot snapshot) {
+                boolean nowConnected = Boolean.TRUE.equals(snapshot.getValue(Boolean.class));
+                if (connected && !nowConnected) {
+                    disconnectedSince = System.currentTimeMillis();
+                }
+                connected = nowConnected;
+            }
+            
+            @Override
+            public void onCancelled(DatabaseError databaseError) {
+                System.err.println("Connection state listener cancelled: " + databaseError.getMessage());
+            }
+        });
+    }
+    
+    private static class Holder {
+        private static final CourseCatalog INSTANCE = new CourseCatalog();
+    }
+    
+    public static CourseCatalog getInstance() {
+        return Holder.INSTANCE;
+    }
+    
+    public boolean isReady() {
+        return ready;
+    }
+    
+    public Collection<CourseSummary> getAll() {
+        return summaries.values();
+    }
+    
+    // Courses after the given id in id order, or all of them for a null cursor
+    public Collection<CourseSummary> getAfter(String cursor) {
+        return cursor != null ? summaries.tailMap(cursor, false).values() : summaries.values();
+    }
+    
+    public CourseSummary get(String courseId) {
+        return summaries.get(courseId);
+    }
+    
+    // Courses matching the search query, best match first
+    public List<CourseSummary> search(String query) {
+        List<CourseSummary> results = new ArrayList<>();
+        for (String courseId : searchIndex.search(query)) {
+            CourseSummary summary = summaries.get(courseId);
+            if (summary != null) {
+                results.add(summary);
+            }
+        }
+        return results;
+    }
+    
+    public Map<String, Object> getMetrics() {
+        long now = System.currentTimeMillis();
+        
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("ready", ready);
+        metrics.put("size", summaries.size());
+        metrics.put("connected", connected);
+        // How far behind the database the catalog may be: zero while the listener is connected
+        metrics.put("stalenessMs", connected ? 0 : now - disconnectedSince);
+        metrics.put("lastEventAgeMs", lastEventAt > 0 ? now - lastEventAt : null);
+        metrics.put("uptimeMs", ready ? now - readyAt : null);
+        metrics.put("added", added.get());
+        metrics.put("changed", changed.get());
+        metrics.put("removed", removed.get());
+        return metrics;
+    }
+    
+    static CourseSummary toSummary(DataSnapshot courseSnapshot) {
+        return new CourseSummary(
+            courseSnapshot.getKey(),
+            courseSnapshot.child("title").getValue(String.class),
+            courseSnapshot.child("description").getValue(String.class),
+            courseSnapshot.child("category").getValue(String.class),
+            courseSnapshot.child("thumbnailUrl").getValue(String.class),
+            courseSnapshot.child("creatorUsername").getValue(String.class),
+            courseSnapshot.child("createdAt").getValue(Long.class),
+            courseSnapshot.child("certificateLink").getValue(String.class),
+            courseSnapshot.child("students").getValue(Long.class),
+            (int) courseSnapshot.child("lessons").getChildrenCount(),
+            (int) courseSnapshot.child("quizzes").getChildrenCount());
+    }
+}
\ No newline at end of file
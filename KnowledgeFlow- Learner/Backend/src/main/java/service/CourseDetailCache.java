@@ -0,0 +1,102 @@
+package service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import config.JacksonJsonMapper;
+import config.ServerConfig;
+import model.CourseDetail;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// Course details for GET /courses/{id}, kept with their serialized form so a popular course is
+// neither re-read nor re-serialized per view. Entries are refreshed from the catalog's change
+// events (CourseCatalog calls refresh/invalidate), so they are only trusted while the catalog is
+// ready. The student count is the one live field: the bytes are re-rendered when it moves.
+//
+// At most kf.courseCache.maxEntries (default 500) courses are kept, least recently viewed out first.
+public class CourseDetailCache {
+    private static final ObjectWriter WRITER = JacksonJsonMapper.createObjectMapper().writerFor(CourseDetail.class);
+    
+    private final Map<String, Entry> entries;
+    
+    private record Rendered(long students, SerializedResponse response) {}
+    
+    private static class Entry {
+        final CourseDetail detail;
+        volatile Rendered rendered;
+        
+        Entry(CourseDetail detail) {
+            this.detail = detail;
+        }
+    }
+    
+    private CourseDetailCache() {
+        int maxEntries = ServerConfig.getInt("kf.courseCache.maxEntries", 500);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+    
+    private static class Holder {
+        private static final CourseDetailCache INSTANCE = new CourseDetailCache();
+    }
+    
+    public static CourseDetailCache getInstance() {
+        return Holder.INSTANCE;
+    }
+    
+    // The cached detail with its stored student count, or null
+    public synchronized CourseDetail get(String courseId) {
+        Entry entry = entries.get(courseId);
+        return entry != null ? entry.detail : null;
+    }
+    
+    public synchronized void put(String courseId, CourseDetail detail) {
+        entries.put(courseId, new Entry(detail));
+    }
+    
+    // Replace a cached course after it changed; courses nobody has viewed are not loaded
+    public synchronized void refresh(String courseId, Supplier<CourseDetail> detail) {
+        if (entries.containsKey(courseId)) {
+            entries.put(courseId, new Entry(detail.get()));
+        }
+    }
+    
+    public synchronized void invalidate(String courseId) {
+        entries.remove(courseId);
+    }
+    
+    // Serialize the detail with the given live student count, reusing the bytes from the last
+    // render when neither the course nor the count has changed since
+    public SerializedResponse render(CourseDetail detail, long students) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(detail.id());
+        }
+        if (entry == null || entry.detail != detail) {
+            return serialize(detail, students);
+        }
+        
+        Rendered rendered = entry.rendered;
+        if (rendered != null && rendered.students() == students) {
+            return rendered.response();
+        }
+        
+        SerializedResponse response = serialize(detail, students);
+        entry.rendered = new Rendered(students, response);
+        return response;
+    }
+    
+    private static SerializedResponse serialize(CourseDetail detail, long students) {
+        try {
+            return SerializedResponse.of(WRITER.writeValueAsBytes(detail.withStudents(students)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize course " + detail.id(), e);
+        }
+    }
+}
\ No newline at end of file
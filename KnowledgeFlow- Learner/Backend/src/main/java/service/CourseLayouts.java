@@ -0,0 +1,88 @@
+package service;
+
+import config.ServerConfig;
+import model.CourseLayout;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+// Lesson and quiz positions per course, read from the course outline once. CourseCatalog passes
+// on course changes: a layout whose lessons or quizzes moved is dropped along with the progress
+// cached against it, and reloaded on next use. At most kf.courseLayouts.maxEntries (default 1000)
+// are kept, least recently used out first.
+public class CourseLayouts {
+    private final CourseService courseService;
+    private final Map<String, CourseLayout> layouts;
+    // Moved on by every drop, so a load that was already in flight doesn't put the old layout back
+    private long generation;
+    
+    private CourseLayouts() {
+        this.courseService = new CourseService();
+        int maxEntries = ServerConfig.getInt("kf.courseLayouts.maxEntries", 1000);
+        this.layouts = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CourseLayout> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+    
+    private static class Holder {
+        private static final CourseLayouts INSTANCE = new CourseLayouts();
+    }
+    
+    public static CourseLayouts getInstance() {
+        return Holder.INSTANCE;
+    }
+    
+    // The layout if it is already in memory, otherwise null
+    public synchronized CourseLayout getIfLoaded(String courseId) {
+        return layouts.get(courseId);
+    }
+    
+    // Null if the course does not exist
+    public CompletableFuture<CourseLayout> getAsync(String courseId) {
+        CourseLayout layout = getIfLoaded(courseId);
+        if (layout != null) {
+            return CompletableFuture.completedFuture(layout);
+        }
+        
+        long started;
+        synchronized (this) {
+            started = generation;
+        }
+        return courseService.getCourseLayoutAsync(courseId).thenApply(loaded -> {
+            if (loaded != null) {
+                synchronized (this) {
+                    if (generation == started) {
+                        layouts.put(courseId, loaded);
+                    }
+                }
+            }
+            return loaded;
+        });
+    }
+    
+    // The course changed: drop its layout, if loaded, when the lessons or quizzes differ from it.
+    // Other edits (the student count, a title) keep it.
+    public void refresh(String courseId, Supplier<CourseLayout> current) {
+        synchronized (this) {
+            CourseLayout loaded = layouts.get(courseId);
+            if (loaded == null || loaded.equals(current.get())) {
+                return;
+            }
+        }
+        invalidate(courseId);
+    }
+    
+    // The course is gone or its layout changed
+    public void invalidate(String courseId) {
+        synchronized (this) {
+            layouts.remove(courseId);
+            generation++;
+        }
+        ProgressCache.getInstance().invalidateCourse(courseId);
+    }
+}
\ No newline at end of file
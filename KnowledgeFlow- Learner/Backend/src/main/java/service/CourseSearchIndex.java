@@ -0,0 +1,240 @@
+package service;
+
+import model.CourseSummary;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Inverted index over course title, description and creatorUsername, updated by CourseCatalog as
+// courses change. A course matches exactly when the query occurs somewhere in one of those
+// fields, ignoring case, the same rule matches() applies when the catalog isn't loaded yet.
+//
+// Candidates come from the terms: every suffix of every term sits in a sorted dictionary, so the
+// terms containing a query token ("script" in "javascript") are one range scan over suffixes
+// starting with it. The candidates are then checked against the whole query, which keeps
+// punctuation ("c++") and word order the way the plain substring check sees them.
+//
+// Matches are ranked with BM25, treating all terms containing a query token as one term. Title
+// hits count three times and creator hits twice as much as description hits.
+public class CourseSearchIndex {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int TITLE_WEIGHT = 3;
+    private static final int CREATOR_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+    
+    // term -> course id -> weighted term frequency
+    private final Map<String, Map<String, Integer>> postings = new HashMap<>();
+    // suffix of a term -> the terms ending with it
+    private final NavigableMap<String, Set<String>> suffixes = new TreeMap<>();
+    // course id -> its terms, so an update can remove the old postings
+    private final Map<String, Set<String>> courseTerms = new HashMap<>();
+    // course id -> its lowercased fields, for the final substring check
+    private final Map<String, List<String>> courseTexts = new HashMap<>();
+    private final Map<String, Integer> courseLengths = new HashMap<>();
+    private long totalLength;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    public void update(CourseSummary summary) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        addTerms(frequencies, summary.getTitle(), TITLE_WEIGHT);
+        addTerms(frequencies, summary.getCreatorUsername(), CREATOR_WEIGHT);
+        addTerms(frequencies, summary.getDescription(), DESCRIPTION_WEIGHT);
+        
+        int length = 0;
+        for (int frequency : frequencies.values()) {
+            length += frequency;
+        }
+        
+        lock.writeLock().lock();
+        try {
+            removeLocked(summary.getId());
+            
+            for (Map.Entry<String, Integer> term : frequencies.entrySet()) {
+                Map<String, Integer> courses = postings.get(term.getKey());
+                if (courses == null) {
+                    courses = new HashMap<>();
+                    postings.put(term.getKey(), courses);
+                    addSuffixes(term.getKey());
+                }
+                courses.put(summary.getId(), term.getValue());
+            }
+            courseTexts.put(summary.getId(), texts(summary));
+            courseTerms.put(summary.getId(), frequencies.keySet());
+            courseLengths.put(summary.getId(), length);
+            totalLength += length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public void remove(String courseId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(courseId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private void removeLocked(String courseId) {
+        Set<String> terms = courseTerms.remove(courseId);
+        if (terms == null) {
+            return;
+        }
+        
+        for (String term : terms) {
+            Map<String, Integer> courses = postings.get(term);
+            courses.remove(courseId);
+            if (courses.isEmpty()) {
+                postings.remove(term);
+                removeSuffixes(term);
+            }
+        }
+        courseTexts.remove(courseId);
+        totalLength -= courseLengths.remove(courseId);
+    }
+    
+    private void addSuffixes(String term) {
+        for (int i = 0; i < term.length(); i++) {
+            suffixes.computeIfAbsent(term.substring(i), key -> new HashSet<>()).add(term);
+        }
+    }
+    
+    private void removeSuffixes(String term) {
+        for (int i = 0; i < term.length(); i++) {
+            String suffix = term.substring(i);
+            Set<String> terms = suffixes.get(suffix);
+            terms.remove(term);
+            if (terms.isEmpty()) {
+                suffixes.remove(suffix);
+            }
+        }
+    }
+    
+    // Ids of the courses containing the query, best match first
+    public List<String> search(String query) {
+        String needle = normalize(query);
+        if (needle.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<String> queryTokens = tokenize(query);
+        
+        lock.readLock().lock();
+        try {
+            int courseCount = courseLengths.size();
+            double averageLength = courseCount > 0 ? (double) totalLength / courseCount : 0;
+            
+            // A query without letters or digits ("++") has nothing to look up; every course is
+            // a candidate for the substring check
+            Map<String, Double> scores = null;
+            if (queryTokens.isEmpty()) {
+                scores = new HashMap<>();
+                for (String courseId : courseLengths.keySet()) {
+                    scores.put(courseId, 0.0);
+                }
+            }
+            
+            for (String token : new LinkedHashSet<>(queryTokens)) {
+                // Sum the frequencies of every term containing the token, each term once
+                Set<String> terms = new HashSet<>();
+                for (Set<String> suffixTerms : suffixes.subMap(token, true, token + Character.MAX_VALUE, false).values()) {
+                    terms.addAll(suffixTerms);
+                }
+                Map<String, Integer> frequencies = new HashMap<>();
+                for (String term : terms) {
+                    for (Map.Entry<String, Integer> course : postings.get(term).entrySet()) {
+                        frequencies.merge(course.getKey(), course.getValue(), Integer::sum);
+                    }
+                }
+                
+                double idf = Math.log(1 + (courseCount - frequencies.size() + 0.5) / (frequencies.size() + 0.5));
+                
+                Map<String, Double> tokenScores = new HashMap<>();
+                for (Map.Entry<String, Integer> course : frequencies.entrySet()) {
+                    // Only courses that matched every earlier token stay in the running
+                    if (scores != null && !scores.containsKey(course.getKey())) {
+                        continue;
+                    }
+                    
+                    double frequency = course.getValue();
+                    double length = courseLengths.get(course.getKey());
+                    double score = idf * frequency * (K1 + 1)
+                        / (frequency + K1 * (1 - B + B * length / averageLength));
+                    tokenScores.put(course.getKey(), (scores != null ? scores.get(course.getKey()) : 0) + score);
+                }
+                
+                scores = tokenScores;
+                if (scores.isEmpty()) {
+                    break;
+                }
+            }
+            
+            List<Map.Entry<String, Double>> ranked = new ArrayList<>();
+            for (Map.Entry<String, Double> course : scores.entrySet()) {
+                if (contains(courseTexts.get(course.getKey()), needle)) {
+                    ranked.add(course);
+                }
+            }
+            ranked.sort(Map.Entry.<String, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+            
+            List<String> courseIds = new ArrayList<>(ranked.size());
+            for (Map.Entry<String, Double> course : ranked) {
+                courseIds.add(course.getKey());
+            }
+            return courseIds;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Whether the query occurs in the course's title, description or creator, ignoring case.
+    // The matching rule for every search, with or without the index.
+    public static boolean matches(CourseSummary summary, String query) {
+        return contains(texts(summary), normalize(query));
+    }
+    
+    private static boolean contains(List<String> texts, String needle) {
+        for (String text : texts) {
+            if (text.contains(needle)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static List<String> texts(CourseSummary summary) {
+        List<String> texts = new ArrayList<>(3);
+        for (String field : new String[] { summary.getTitle(), summary.getDescription(), summary.getCreatorUsername() }) {
+            if (field != null) {
+                texts.add(normalize(field));
+            }
+        }
+        return texts;
+    }
+    
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+    
+    private static void addTerms(Map<String, Integer> frequencies, String text, int weight) {
+        for (String term : tokenize(text)) {
+            frequencies.merge(term, weight, Integer::sum);
+        }
+    }
+    
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
\ No newline at end of file
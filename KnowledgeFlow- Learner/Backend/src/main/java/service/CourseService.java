@@ -1,169 +1,509 @@
 package service;
 
 import com.google.firebase.database.*;
-import model.Course;
+import model.CourseDetail;
+import model.CourseLayout;
+import model.CourseListing;
+import model.CourseOutline;
+import model.CourseSummary;
+import model.Page;
 
 import java.util.*;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class CourseService {
+    // Lessons in their authored order; lessons without one go last, by id
+    private static final Comparator<CourseOutline.LessonEntry> LESSON_ORDER = Comparator
+        .comparing(CourseOutline.LessonEntry::order, Comparator.nullsLast(Comparator.naturalOrder()))
+        .thenComparing(CourseOutline.LessonEntry::id);
+    
     private final DatabaseReference courseRef;
+    private final DatabaseReference outlineRef;
+    private final StudentCountAggregator studentCounts;
+    private final CourseCatalog catalog;
+    private final CourseDetailCache detailCache;
+    private final ExistenceCache existence;
     
     public CourseService() {
         this.courseRef = FirebaseDatabase.getInstance().getReference("courses");
+        this.outlineRef = FirebaseDatabase.getInstance().getReference("courseOutlines");
+        this.studentCounts = StudentCountAggregator.getInstance();
+        this.catalog = CourseCatalog.getInstance();
+        this.detailCache = CourseDetailCache.getInstance();
+        this.existence = ExistenceCache.courses();
     }
     
-    public List<Map<String, Object>> browseAllCourses(String category, String search) throws Exception {
-        final List<Map<String, Object>> allCourses = new ArrayList<>();
-        final CountDownLatch latch = new CountDownLatch(1);
-        
-        courseRef.addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(DataSnapshot dataSnapshot) {
-                for (DataSnapshot courseSnapshot : dataSnapshot.getChildren()) {
-                    // Create a simplified course object with only essential fields
-                    Map<String, Object> course = new HashMap<>();
-                    course.put("id", courseSnapshot.getKey());
-                    
-                    // Extract only the needed fields
-                    String title = courseSnapshot.child("title").getValue(String.class);
-                    String description = courseSnapshot.child("description").getValue(String.class);
-                    String creatorUsername = courseSnapshot.child("creatorUsername").getValue(String.class);
-                    String thumbnailUrl = courseSnapshot.child("thumbnailUrl").getValue(String.class);
-                    String courseCategory = courseSnapshot.child("category").getValue(String.class);
-                    
-                    course.put("title", title);
-                    course.put("description", description);
-                    course.put("creatorUsername", creatorUsername);
-                    course.put("thumbnailUrl", thumbnailUrl);
-                    course.put("category", courseCategory);
-                    
-                    // Apply filtering logic
-                    boolean includeInResults = true;
-                    
-                    // Filter by category if specified
-                    if (category != null && !category.isEmpty() && !category.equalsIgnoreCase("all")) {
-                        if (courseCategory == null || !courseCategory.equalsIgnoreCase(category)) {
-                            includeInResults = false;
-                        }
-                    }
-                    
-                    // Filter by search term if provided
-                    if (search != null && !search.isEmpty()) {
-                        boolean matchesSearch = false;
-                        
-                        if (title != null && title.toLowerCase().contains(search.toLowerCase())) {
-                            matchesSearch = true;
-                        } else if (description != null && description.toLowerCase().contains(search.toLowerCase())) {
-                            matchesSearch = true;
-                        } else if (creatorUsername != null && creatorUsername.toLowerCase().contains(search.toLowerCase())) {
-                            matchesSearch = true;
-                        }
-                        
-                        if (!matchesSearch) {
-                            includeInResults = false;
+    public List<CourseListing> browseAllCourses(String category, String search) throws Exception {
+        return FirebaseFutures.await(browseAllCoursesAsync(category, search));
+    }
+    
+    public CompletableFuture<List<CourseListing>> browseAllCoursesAsync(String category, String search) {
+        // Served from the resident catalog once it has loaded; read the whole tree until then
+        if (catalog.isReady()) {
+            // Search results come ranked from the index and only need the category filter
+            if (search != null && !search.isEmpty()) {
+                return CompletableFuture.completedFuture(filterCourses(catalog.search(search), category, null));
+            }
+            return CompletableFuture.completedFuture(filterCourses(catalog.getAll(), category, null));
+        }
+        
+        return FirebaseFutures.read(courseRef).thenApply(dataSnapshot -> {
+            List<CourseSummary> summaries = new ArrayList<>();
+            for (DataSnapshot courseSnapshot : dataSnapshot.getChildren()) {
+                summaries.add(CourseCatalog.toSummary(courseSnapshot));
+            }
+            return filterCourses(summaries, category, search);
+        });
+    }
+    
+    // Browse results as a lazy stream of summaries, for writers that serialize one course at a
+    // time; no response maps are built
+    public CompletableFuture<Stream<CourseSummary>> browseSummariesAsync(String category, String search) {
+        if (catalog.isReady()) {
+            Collection<CourseSummary> summaries = search != null && !search.isEmpty()
+                ? catalog.search(search)
+                : catalog.getAll();
+            return CompletableFuture.completedFuture(
+                summaries.stream().filter(summary -> matches(summary, category, null)));
+        }
+        
+        return FirebaseFutures.read(courseRef).thenApply(dataSnapshot ->
+            StreamSupport.stream(dataSnapshot.getChildren().spliterator(), false)
+                .map(CourseCatalog::toSummary)
+                .filter(summary -> matches(summary, category, search)));
+    }
+    
+    public boolean isCatalogReady() {
+        return catalog.isReady();
+    }
+    
+    public CourseSummary getCatalogSummary(String courseId) {
+        return catalog.get(courseId);
+    }
+    
+    // Stored student count plus enrollments not flushed yet
+    public long getStudentCount(CourseSummary summary) {
+        return studentCounts.getStudentCount(summary.getId(), summary.getStudents());
+    }
+    
+    // One page of browse results in a stable order: course id order, or rank order for a search
+    // served by the catalog. The cursor is the id of the last course on the previous page.
+    public CompletableFuture<Page<CourseListing>> browseCoursesPageAsync(String category, String search,
+                                                                              int limit, String cursor) {
+        if (catalog.isReady()) {
+            if (search != null && !search.isEmpty()) {
+                List<CourseSummary> ranked = catalog.search(search);
+                
+                // Continue after the cursor's position in the current ranking
+                int start = 0;
+                if (cursor != null) {
+                    start = ranked.size();
+                    for (int i = 0; i < ranked.size(); i++) {
+                        if (ranked.get(i).getId().equals(cursor)) {
+                            start = i + 1;
+                            break;
                         }
                     }
-                    
-                    if (includeInResults) {
-                        allCourses.add(course);
-                    }
+                }
+                return CompletableFuture.completedFuture(collectPage(ranked.subList(start, ranked.size()), category, null, limit));
+            }
+            return CompletableFuture.completedFuture(collectPage(catalog.getAfter(cursor), category, null, limit));
+        }
+        
+        return readCoursePage(category, search, limit, cursor, new ArrayList<>());
+    }
+    
+    // Walk the courses in key order a batch at a time until the page is full, so only the
+    // courses up to the end of the page are downloaded
+    private CompletableFuture<Page<CourseListing>> readCoursePage(String category, String search, int limit,
+                                                                       String cursor, List<CourseSummary> matched) {
+        int batchSize = limit + 1;
+        Query query = courseRef.orderByKey();
+        if (cursor != null) {
+            // startAt is inclusive, so fetch one extra and skip the cursor itself
+            query = query.startAt(cursor);
+            batchSize++;
+        }
+        int requested = batchSize;
+        
+        return FirebaseFutures.read(query.limitToFirst(requested)).thenCompose(dataSnapshot -> {
+            String lastKey = cursor;
+            int received = 0;
+            
+            for (DataSnapshot courseSnapshot : dataSnapshot.getChildren()) {
+                received++;
+                lastKey = courseSnapshot.getKey();
+                if (courseSnapshot.getKey().equals(cursor)) {
+                    continue;
                 }
                 
-                latch.countDown();
+                CourseSummary summary = CourseCatalog.toSummary(courseSnapshot);
+                if (matches(summary, category, search)) {
+                    matched.add(summary);
+                }
             }
-
-            @Override
-            public void onCancelled(DatabaseError databaseError) {
-                latch.countDown();
+            
+            if (matched.size() > limit || received < requested) {
+                return CompletableFuture.completedFuture(collectPage(matched, null, null, limit));
             }
+            return readCoursePage(category, search, limit, lastKey, matched);
         });
+    }
+    
+    private Page<CourseListing> collectPage(Iterable<CourseSummary> summaries, String category, String search, int limit) {
+        List<CourseListing> courses = new ArrayList<>();
+        String lastId = null;
+        
+        for (CourseSummary summary : summaries) {
+            if (!matches(summary, category, search)) {
+                continue;
+            }
+            if (courses.size() == limit) {
+                // There is at least one more match, so hand out a cursor for the next page
+                return new Page<>(courses, lastId);
+            }
+            courses.add(toListing(summary));
+            lastId = summary.getId();
+        }
+        
+        return new Page<>(courses, null);
+    }
+    
+    private List<CourseListing> filterCourses(Collection<CourseSummary> summaries, String category, String search) {
+        final List<CourseListing> allCourses = new ArrayList<>();
+        
+        for (CourseSummary summary : summaries) {
+            if (matches(summary, category, search)) {
+                allCourses.add(toListing(summary));
+            }
+        }
         
-        latch.await();
         return allCourses;
     }
     
-    public Map<String, Object> getCourseById(String courseId) throws Exception {
-        final Map<String, Object>[] courseData = new Map[1];
-        final CountDownLatch latch = new CountDownLatch(1);
-        
-        courseRef.child(courseId).addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(DataSnapshot dataSnapshot) {
-                if (dataSnapshot.exists()) {
-                    Map<String, Object> course = new HashMap<>();
-                    
-                    for (DataSnapshot child : dataSnapshot.getChildren()) {
-                        String key = child.getKey();
-                        Object value = child.getValue();
-                        
-                        // Handle special cases like lessons and quizzes which are complex objects
-                        if (key.equals("lessons") || key.equals("quizzes")) {
-                            List<Map<String, Object>> items = new ArrayList<>();
-                            for (DataSnapshot itemSnapshot : child.getChildren()) {
-                                Map<String, Object> item = new HashMap<>();
-                                for (DataSnapshot itemField : itemSnapshot.getChildren()) {
-                                    item.put(itemField.getKey(), itemField.getValue());
-                                }
-                                items.add(item);
-                            }
-                            course.put(key, items);
-                        } else {
-                            course.put(key, value);
-                        }
-                    }
-                    
-                    courseData[0] = course;
-                }
-                latch.countDown();
+    private boolean matches(CourseSummary summary, String category, String search) {
+        // Filter by category if specified
+        if (category != null && !category.isEmpty() && !category.equalsIgnoreCase("all")) {
+            if (summary.getCategory() == null || !summary.getCategory().equalsIgnoreCase(category)) {
+                return false;
             }
-
-            @Override
-            public void onCancelled(DatabaseError databaseError) {
-                latch.countDown();
+        }
+        
+        // Filter by search term if provided; the same rule the catalog's search index applies
+        if (search != null && !search.isEmpty()) {
+            return CourseSearchIndex.matches(summary, search);
+        }
+        
+        return true;
+    }
+    
+    private CourseListing toListing(CourseSummary summary) {
+        return new CourseListing(
+            summary.getId(),
+            summary.getTitle(),
+            summary.getDescription(),
+            summary.getCreatorUsername(),
+            summary.getThumbnailUrl(),
+            summary.getCategory(),
+            getStudentCount(summary));
+    }
+    
+    public CourseDetail getCourseById(String courseId) throws Exception {
+        return FirebaseFutures.await(getCourseByIdAsync(courseId));
+    }
+    
+    public CompletableFuture<CourseDetail> getCourseByIdAsync(String courseId) {
+        return FirebaseFutures.read(courseRef.child(courseId)).thenApply(dataSnapshot -> {
+            if (!dataSnapshot.exists()) {
+                return null;
             }
+            
+            CourseDetail course = toCourseDetail(dataSnapshot);
+            return course.withStudents(studentCounts.getStudentCount(courseId, course.students()));
         });
+    }
+    
+    // The serialized course detail with its ETag, or null if the course does not exist. Served
+    // from CourseDetailCache while the catalog keeps it current; read and cached otherwise.
+    public CompletableFuture<SerializedResponse> getCourseDetailResponseAsync(String courseId) {
+        CourseDetail cached = catalog.isReady() ? detailCache.get(courseId) : null;
         
-        latch.await();
-        return courseData[0];
+        CompletableFuture<CourseDetail> detail = cached != null
+            ? CompletableFuture.completedFuture(cached)
+            : FirebaseFutures.read(courseRef.child(courseId)).thenApply(dataSnapshot -> {
+                if (!dataSnapshot.exists()) {
+                    return null;
+                }
+                
+                // Runs on the event thread ahead of any later change event, so the catalog's
+                // refresh can't be overtaken by this older copy
+                CourseDetail course = toCourseDetail(dataSnapshot);
+                if (catalog.isReady()) {
+                    detailCache.put(courseId, course);
+                }
+                return course;
+            });
+        
+        return detail.thenApply(course -> course != null
+            ? detailCache.render(course, studentCounts.getStudentCount(courseId, course.students()))
+            : null);
     }
     
-    public boolean courseExists(String courseId) throws Exception {
-        final boolean[] exists = {false};
-        final CountDownLatch latch = new CountDownLatch(1);
+    // Course detail as stored, with the stored student count
+    static CourseDetail toCourseDetail(DataSnapshot dataSnapshot) {
+        String courseId = dataSnapshot.getKey();
+        Long students = dataSnapshot.child("students").getValue(Long.class);
+        
+        // Lessons and quizzes are keyed by id; the key is their id
+        List<CourseDetail.LessonItem> lessons = null;
+        if (dataSnapshot.hasChild("lessons")) {
+            lessons = new ArrayList<>();
+            for (DataSnapshot lessonSnapshot : dataSnapshot.child("lessons").getChildren()) {
+                lessons.add(toLessonItem(lessonSnapshot));
+            }
+        }
         
-        courseRef.child(courseId).addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(DataSnapshot dataSnapshot) {
-                exists[0] = dataSnapshot.exists();
-                latch.countDown();
+        List<CourseDetail.QuizItem> quizzes = null;
+        if (dataSnapshot.hasChild("quizzes")) {
+            quizzes = new ArrayList<>();
+            for (DataSnapshot quizSnapshot : dataSnapshot.child("quizzes").getChildren()) {
+                quizzes.add(toQuizItem(quizSnapshot));
             }
+        }
+        
+        return new CourseDetail(
+            courseId,
+            dataSnapshot.child("title").getValue(String.class),
+            dataSnapshot.child("description").getValue(String.class),
+            dataSnapshot.child("category").getValue(String.class),
+            dataSnapshot.child("thumbnailUrl").getValue(String.class),
+            dataSnapshot.child("creatorUsername").getValue(String.class),
+            dataSnapshot.child("createdAt").getValue(Long.class),
+            dataSnapshot.child("certificateLink").getValue(String.class),
+            students != null ? students : 0L,
+            lessons,
+            quizzes);
+    }
+    
+    private static CourseDetail.LessonItem toLessonItem(DataSnapshot lessonSnapshot) {
+        return new CourseDetail.LessonItem(
+            lessonSnapshot.getKey(),
+            lessonSnapshot.child("title").getValue(String.class),
+            lessonSnapshot.child("content").getValue(String.class),
+            lessonSnapshot.child("order").getValue(Integer.class),
+            lessonSnapshot.child("videoUrl").getValue(String.class));
+    }
+    
+    private static CourseDetail.QuizItem toQuizItem(DataSnapshot quizSnapshot) {
+        List<String> options = new ArrayList<>();
+        for (DataSnapshot optionSnapshot : quizSnapshot.child("options").getChildren()) {
+            options.add(optionSnapshot.getValue(String.class));
+        }
+        
+        return new CourseDetail.QuizItem(
+            quizSnapshot.getKey(),
+            quizSnapshot.child("question").getValue(String.class),
+            options,
+            quizSnapshot.child("correctOption").getValue(Integer.class));
+    }
+    
+    // Table of contents of a course, or null if it does not exist. Lesson titles and quiz ids
+    // come from courseOutlines/{id}, which the instructor backend writes next to the course, so
+    // no lesson body is downloaded. Courses created before outlines existed get theirs built
+    // from the lessons once and written back.
+    public CompletableFuture<CourseOutline> getCourseOutlineAsync(String courseId) {
+        CompletableFuture<CourseSummary> summaryRead = getCourseSummaryAsync(courseId);
+        CompletableFuture<DataSnapshot> outlineRead = FirebaseFutures.read(outlineRef.child(courseId));
+        
+        return summaryRead.thenCompose(summary -> {
+            if (summary == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            
+            CompletableFuture<OutlineContents> contents = outlineRead.thenCompose(outlineSnapshot -> outlineSnapshot.exists()
+                ? CompletableFuture.completedFuture(toOutlineContents(outlineSnapshot))
+                : rebuildOutline(courseId));
             
-            @Override
-            public void onCancelled(DatabaseError databaseError) {
-                latch.countDown();
+            return contents.thenApply(outline -> new CourseOutline(
+                summary.getId(),
+                summary.getTitle(),
+                summary.getDescription(),
+                summary.getCategory(),
+                summary.getThumbnailUrl(),
+                summary.getCreatorUsername(),
+                summary.getCreatedAt(),
+                summary.getCertificateLink(),
+                getStudentCount(summary),
+                outline.lessons(),
+                outline.quizIds()));
+        });
+    }
+    
+    // Lesson and quiz ids from the outline, for positions in compact progress; null if the
+    // course does not exist
+    public CompletableFuture<CourseLayout> getCourseLayoutAsync(String courseId) {
+        CompletableFuture<DataSnapshot> outlineRead = FirebaseFutures.read(outlineRef.child(courseId));
+        
+        return courseExistsAsync(courseId).thenCompose(exists -> {
+            if (!exists) {
+                return CompletableFuture.completedFuture(null);
             }
+            
+            return outlineRead.thenCompose(outlineSnapshot -> outlineSnapshot.exists()
+                    ? CompletableFuture.completedFuture(toOutlineContents(outlineSnapshot))
+                    : rebuildOutline(courseId))
+                .thenApply(outline -> new CourseLayout(
+                    outline.lessons().stream().map(CourseOutline.LessonEntry::id).toList(),
+                    outline.quizIds()));
         });
+    }
+    
+    private record OutlineContents(List<CourseOutline.LessonEntry> lessons, List<String> quizIds) {}
+    
+    private static OutlineContents toOutlineContents(DataSnapshot outlineSnapshot) {
+        List<CourseOutline.LessonEntry> lessons = new ArrayList<>();
+        for (DataSnapshot lessonSnapshot : outlineSnapshot.child("lessons").getChildren()) {
+            lessons.add(toLessonEntry(lessonSnapshot));
+        }
+        lessons.sort(LESSON_ORDER);
         
-        latch.await();
-        return exists[0];
+        List<String> quizIds = new ArrayList<>();
+        for (DataSnapshot quizSnapshot : outlineSnapshot.child("quizzes").getChildren()) {
+            quizIds.add(quizSnapshot.getKey());
+        }
+        
+        return new OutlineContents(lessons, quizIds);
     }
     
-    public void incrementStudentCount(String courseId) {
-        courseRef.child(courseId).child("students").addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(DataSnapshot dataSnapshot) {
-                int currentStudents = 0;
-                if (dataSnapshot.exists()) {
-                    currentStudents = dataSnapshot.getValue(Integer.class);
-                }
-                courseRef.child(courseId).child("students").setValueAsync(currentStudents + 1);
+    // Outline entries and lesson nodes share field names, so this reads either
+    private static CourseOutline.LessonEntry toLessonEntry(DataSnapshot lessonSnapshot) {
+        return new CourseOutline.LessonEntry(
+            lessonSnapshot.getKey(),
+            lessonSnapshot.child("title").getValue(String.class),
+            lessonSnapshot.child("order").getValue(Integer.class),
+            lessonSnapshot.child("videoUrl").getValue(String.class));
+    }
+    
+    // The layout straight from a course node, as the catalog sees it change; the same positions
+    // getCourseLayoutAsync reads from the outline
+    static CourseLayout toCourseLayout(DataSnapshot courseSnapshot) {
+        List<CourseOutline.LessonEntry> lessons = new ArrayList<>();
+        for (DataSnapshot lessonSnapshot : courseSnapshot.child("lessons").getChildren()) {
+            lessons.add(toLessonEntry(lessonSnapshot));
+        }
+        lessons.sort(LESSON_ORDER);
+        
+        List<String> quizIds = new ArrayList<>();
+        for (DataSnapshot quizSnapshot : courseSnapshot.child("quizzes").getChildren()) {
+            quizIds.add(quizSnapshot.getKey());
+        }
+        
+        return new CourseLayout(lessons.stream().map(CourseOutline.LessonEntry::id).toList(), quizIds);
+    }
+    
+    // Legacy courses: read the lessons (bodies included, this once) and quiz ids, and store the
+    // outline so later opens read only that
+    private CompletableFuture<OutlineContents> rebuildOutline(String courseId) {
+        CompletableFuture<DataSnapshot> lessonsRead = FirebaseFutures.read(courseRef.child(courseId).child("lessons"));
+        CompletableFuture<DataSnapshot> quizzesRead = FirebaseFutures.read(courseRef.child(courseId).child("quizzes"));
+        
+        return lessonsRead.thenCombine(quizzesRead, (lessonsSnapshot, quizzesSnapshot) -> {
+            Map<String, Object> lessonsData = new HashMap<>();
+            for (DataSnapshot lessonSnapshot : lessonsSnapshot.getChildren()) {
+                Map<String, Object> lessonData = new HashMap<>();
+                lessonData.put("title", lessonSnapshot.child("title").getValue(String.class));
+                lessonData.put("order", lessonSnapshot.child("order").getValue(Integer.class));
+                lessonData.put("videoUrl", lessonSnapshot.child("videoUrl").getValue(String.class));
+                lessonsData.put(lessonSnapshot.getKey(), lessonData);
             }
-
-            @Override
-            public void onCancelled(DatabaseError databaseError) {
-                // Do nothing
+            
+            Map<String, Object> quizzesData = new HashMap<>();
+            for (DataSnapshot quizSnapshot : quizzesSnapshot.getChildren()) {
+                quizzesData.put(quizSnapshot.getKey(), true);
             }
+            
+            Map<String, Object> outlineData = new HashMap<>();
+            outlineData.put("lessons", lessonsData);
+            outlineData.put("quizzes", quizzesData);
+            
+            // Best effort: the outline is returned either way, and rebuilt next time if this fails
+            FirebaseFutures.toCompletable(outlineRef.child(courseId).setValueAsync(outlineData))
+                .exceptionally(e -> {
+                    FirebaseFutures.unwrap(e).printStackTrace();
+                    return null;
+                });
+            
+            List<CourseOutline.LessonEntry> lessons = new ArrayList<>();
+            for (DataSnapshot lessonSnapshot : lessonsSnapshot.getChildren()) {
+                lessons.add(toLessonEntry(lessonSnapshot));
+            }
+            lessons.sort(LESSON_ORDER);
+            
+            return new OutlineContents(lessons, new ArrayList<>(quizzesData.keySet()));
+        });
+    }
+    
+    // A single lesson with its body, or null if the course has no such lesson. Reads only
+    // courses/{id}/lessons/{lessonId}.
+    public CompletableFuture<CourseDetail.LessonItem> getLessonAsync(String courseId, String lessonId) {
+        return FirebaseFutures.read(courseRef.child(courseId).child("lessons").child(lessonId))
+            .thenApply(lessonSnapshot -> lessonSnapshot.exists() ? toLessonItem(lessonSnapshot) : null);
+    }
+    
+    // A single quiz, or null if the course has no such quiz
+    public CompletableFuture<CourseDetail.QuizItem> getQuizAsync(String courseId, String quizId) {
+        return FirebaseFutures.read(courseRef.child(courseId).child("quizzes").child(quizId))
+            .thenApply(quizSnapshot -> quizSnapshot.exists() ? toQuizItem(quizSnapshot) : null);
+    }
+    
+    // Summary fields of a single course, or null if it does not exist. Comes from the catalog
+    // once it has loaded; before that, from one read of the course node. That read brings the
+    // lesson and quiz bodies along, but only happens in the moments after startup.
+    public CompletableFuture<CourseSummary> getCourseSummaryAsync(String courseId) {
+        if (catalog.isReady()) {
+            return CompletableFuture.completedFuture(catalog.get(courseId));
+        }
+        
+        return FirebaseFutures.read(courseRef.child(courseId))
+            .thenApply(courseSnapshot -> courseSnapshot.exists() ? CourseCatalog.toSummary(courseSnapshot) : null);
+    }
+    
+    public boolean courseExists(String courseId) throws Exception {
+        return FirebaseFutures.await(courseExistsAsync(courseId));
+    }
+    
+    // A course exists when courses/{id} does, the same test the catalog's child events apply.
+    // Answered by the catalog once it has loaded. Before that, recent answers come from
+    // ExistenceCache and the database is asked for the course's title, so the lessons and quizzes
+    // under it aren't downloaded just to learn that it exists; only a course without a title is
+    // read whole.
+    public CompletableFuture<Boolean> courseExistsAsync(String courseId) {
+        if (catalog.isReady()) {
+            return CompletableFuture.completedFuture(catalog.get(courseId) != null);
+        }
+        
+        Boolean known = existence.get(courseId);
+        if (known != null) {
+            return CompletableFuture.completedFuture(known);
+        }
+        
+        return FirebaseFutures.read(courseRef.child(courseId).child("title")).thenCompose(title -> title.exists()
+            ? CompletableFuture.completedFuture(true)
+            : FirebaseFutures.read(courseRef.child(courseId)).thenApply(DataSnapshot::exists)
+        ).thenApply(exists -> {
+            existence.put(courseId, exists);
+            return exists;
         });
     }
+    
+    public void incrementStudentCount(String courseId) {
+        // Absorbed in memory and flushed to courses/{id}/students as one transactional delta
+        studentCounts.increment(courseId);
+    }
+    
+    public Map<String, Object> getCatalogMetrics() {
+        return catalog.getMetrics();
+    }
 }
\ No newline at end of file
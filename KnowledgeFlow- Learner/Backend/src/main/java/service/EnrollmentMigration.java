@@ -0,0 +1,84 @@
+package service;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+// Enrollments are stored as learners/{username}/enrollments/{courseId} = true, so checking one
+// is a single keyed read and enrolling twice hits the same key. They used to be push() children
+// holding the course id; migrateIfNeeded() rewrites those once for the whole database and marks
+// meta/enrollmentsKeyed when done. Until then readers accept both shapes, and a learner whose
+// record is read is rewritten on the spot.
+public class EnrollmentMigration {
+    private static final String MIGRATED_MARKER = "meta/enrollmentsKeyed";
+    
+    private final DatabaseReference learnerRef;
+    private volatile boolean migrated;
+    
+    private EnrollmentMigration() {
+        this.learnerRef = FirebaseDatabase.getInstance().getReference("learners");
+    }
+    
+    private static class Holder {
+        private static final EnrollmentMigration INSTANCE = new EnrollmentMigration();
+    }
+    
+    public static EnrollmentMigration getInstance() {
+        return Holder.INSTANCE;
+    }
+    
+    public boolean isMigrated() {
+        return migrated;
+    }
+    
+    // The course id of a child of enrollments, in either shape, or null
+    public static String courseId(DataSnapshot enrollment) {
+        Object value = enrollment.getValue();
+        if (value instanceof String courseId) {
+            return courseId;
+        }
+        return Boolean.TRUE.equals(value) ? enrollment.getKey() : null;
+    }
+    
+    // Updates, relative to learners/{username}, that rewrite the learner's push() enrollments as
+    // keyed ones; empty when there are none
+    public static Map<String, Object> keyedUpdates(DataSnapshot enrollments) {
+        Map<String, Object> updates = new HashMap<>();
+        for (DataSnapshot enrollment : enrollments.getChildren()) {
+            if (enrollment.getValue() instanceof String courseId) {
+                updates.put("enrollments/" + enrollment.getKey(), null);
+                updates.put("enrollments/" + courseId, true);
+            }
+        }
+        return updates;
+    }
+    
+    // Rewrite every learner's push() enrollments, unless an earlier run already did. Needs the
+    // whole learner tree, so it runs once per database rather than per request, from the tree
+    // Main reads once for all startup jobs.
+    public CompletableFuture<Void> migrateIfNeeded(CompletableFuture<DataSnapshot> learners) {
+        DatabaseReference markerRef = learnerRef.getRoot().child(MIGRATED_MARKER);
+        
+        return FirebaseFutures.read(markerRef).thenCompose(marker -> {
+            if (Boolean.TRUE.equals(marker.getValue(Boolean.class))) {
+                migrated = true;
+                return CompletableFuture.completedFuture(null);
+            }
+            
+            return learners.thenApply(tree -> {
+                Map<String, Object> updates = new HashMap<>();
+                for (DataSnapshot learner : tree.getChildren()) {
+                    keyedUpdates(learner.child("enrollments")).forEach((path, value) ->
+                        updates.put(learnerRef.getKey() + "/" + learner.getKey() + "/" + path, value));
+                }
+                updates.put(MIGRATED_MARKER, true);
+                return updates;
+            }).thenCompose(updates -> FirebaseFutures.toCompletable(learnerRef.getRoot().updateChildrenAsync(updates)))
+                .thenAccept(ignored -> migrated = true);
+        });
+    }
+}
\ No newline at end of file
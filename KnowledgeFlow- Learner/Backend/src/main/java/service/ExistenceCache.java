@@ -0,0 +1,75 @@
+package service;
+
+import config.ServerConfig;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Remembers whether a course or learner exists, so repeated checks and lookups of bogus ids
+// don't each cost a database round trip. Hits are kept kf.existsCache.ttlSeconds (default 300);
+// misses only kf.existsCache.negativeTtlSeconds (default 10), since something may be created
+// under that id any moment. Writes made by this server update the cache directly.
+//
+// Courses are also fed by CourseCatalog's listener, so a deleted course is noticed at once.
+// Learners have no listener on their (large) nodes: signup here marks them present, and a
+// revokedSessions entry (RevokedSessions), written whenever a learner is deleted, drops the
+// cached answer. A learner deleted without one still counts as present for up to the
+// positive TTL.
+//
+// Each cache holds at most kf.existsCache.maxEntries (default 10000) ids, least recently used
+// out first.
+public class ExistenceCache {
+    private final long ttlMillis;
+    private final long negativeTtlMillis;
+    private final Map<String, Entry> entries;
+    
+    private record Entry(boolean exists, long expiresAt) {}
+    
+    private ExistenceCache() {
+        this.ttlMillis = ServerConfig.getInt("kf.existsCache.ttlSeconds", 300) * 1000L;
+        this.negativeTtlMillis = ServerConfig.getInt("kf.existsCache.negativeTtlSeconds", 10) * 1000L;
+        int maxEntries = ServerConfig.getInt("kf.existsCache.maxEntries", 10000);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+    
+    private static class Holder {
+        private static final ExistenceCache COURSES = new ExistenceCache();
+        private static final ExistenceCache LEARNERS = new ExistenceCache();
+    }
+    
+    public static ExistenceCache courses() {
+        return Holder.COURSES;
+    }
+    
+    public static ExistenceCache learners() {
+        return Holder.LEARNERS;
+    }
+    
+    // TRUE or FALSE while a recent answer is known, null when the database has to be asked
+    public synchronized Boolean get(String id) {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt() < System.currentTimeMillis()) {
+            entries.remove(id);
+            return null;
+        }
+        return entry.exists();
+    }
+    
+    // Forget the answer, so the next check asks the database
+    public synchronized void invalidate(String id) {
+        entries.remove(id);
+    }
+    
+    public synchronized void put(String id, boolean exists) {
+        long ttl = exists ? ttlMillis : negativeTtlMillis;
+        entries.put(id, new Entry(exists, System.currentTimeMillis() + ttl));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,172 @@
+package service;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.firebase.database.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+
+// Bridges the callback-based Firebase API onto CompletableFuture so request
+// handlers can wait on the database without holding a thread
+public final class FirebaseFutures {
+    
+    private FirebaseFutures() {}
+    
+    // Read the value at a location once. The future completes on the Firebase
+    // event thread, so dependent stages must not block.
+    public static CompletableFuture<DataSnapshot> read(Query query) {
+        CompletableFuture<DataSnapshot> future = new CompletableFuture<>();
+        
+        query.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(DataSnapshot dataSnapshot) {
+                future.complete(dataSnapshot);
+            }
+            
+            @Override
+            public void onCancelled(DatabaseError databaseError) {
+                future.completeExceptionally(databaseError.toException());
+            }
+        });
+        
+        return future;
+    }
+    
+    // Adapt the ApiFuture returned by setValueAsync / updateChildrenAsync
+    public static <T> CompletableFuture<T> toCompletable(ApiFuture<T> apiFuture) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        
+        ApiFutures.addCallback(apiFuture, new ApiFutureCallback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                future.complete(result);
+            }
+            
+            @Override
+            public void onFailure(Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }, MoreExecutors.directExecutor());
+        
+        return future;
+    }
+    
+    // Atomically add delta to the numeric value at ref with a transaction, so concurrent
+    // increments from different requests or servers are never lost. Completes with the new value.
+    // attempt is handed the value each try starts from, before Firebase applies the result locally.
+    public static CompletableFuture<Long> increment(DatabaseReference ref, long delta, LongConsumer attempt) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        
+        ref.runTransaction(new Transaction.Handler() {
+            @Override
+            public Transaction.Result doTransaction(MutableData currentData) {
+                Long current = currentData.getValue(Long.class);
+                attempt.accept(current != null ? current : 0L);
+                currentData.setValue((current != null ? current : 0L) + delta);
+                return Transaction.success(currentData);
+            }
+            
+            @Override
+            public void onComplete(DatabaseError databaseError, boolean committed, DataSnapshot dataSnapshot) {
+                if (databaseError != null) {
+                    future.completeExceptionally(databaseError.toException());
+                } else {
+                    future.complete(dataSnapshot.getValue(Long.class));
+                }
+            }
+        });
+        
+        return future;
+    }
+    
+    // Apply an async operation (typically a read) to every item with at most maxConcurrency
+    // in flight at once; results keep the order of the input
+    public static <T, R> CompletableFuture<List<R>> mapBounded(List<T> items, int maxConcurrency,
+                                                             Function<T, CompletableFuture<R>> operation) {
+        AtomicReferenceArray<R> results = new AtomicReferenceArray<>(items.size());
+        AtomicInteger next = new AtomicInteger();
+        
+        List<CompletableFuture<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < Math.min(Math.max(maxConcurrency, 1), items.size()); i++) {
+            workers.add(runNext(items, operation, results, next));
+        }
+        
+        return CompletableFuture.allOf(workers.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            List<R> ordered = new ArrayList<>(items.size());
+            for (int i = 0; i < items.size(); i++) {
+                ordered.add(results.get(i));
+            }
+            return ordered;
+        });
+    }
+    
+    private static <T, R> CompletableFuture<Void> runNext(List<T> items, Function<T, CompletableFuture<R>> operation,
+                                                          AtomicReferenceArray<R> results, AtomicInteger next) {
+        int index = next.getAndIncrement();
+        if (index >= items.size()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return operation.apply(items.get(index)).thenCompose(result -> {
+            results.set(index, result);
+            return runNext(items, operation, results, next);
+        });
+    }
+    
+    // Run update as a transaction at ref; completes with whether it committed (false when
+    // update aborted)
+    public static CompletableFuture<Boolean> transact(DatabaseReference ref,
+                                                      Function<MutableData, Transaction.Result> update) {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        
+        ref.runTransaction(new Transaction.Handler() {
+            @Override
+            public Transaction.Result doTransaction(MutableData currentData) {
+                return update.apply(currentData);
+            }
+            
+            @Override
+            public void onComplete(DatabaseError databaseError, boolean committed, DataSnapshot dataSnapshot) {
+                if (databaseError != null) {
+                    future.completeExceptionally(databaseError.toException());
+                } else {
+                    future.complete(committed);
+                }
+            }
+        });
+        
+        return future;
+    }
+    
+    // Blocking adapter: rethrow the original failure rather than the
+    // ExecutionException wrapper so callers keep seeing the same messages
+    public static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+    
+    public static Throwable unwrap(Throwable throwable) {
+        Throwable current = throwable;
+        while ((current instanceof CompletionException || current instanceof ExecutionException)
+                && current.getCause() != null) {
+            current = current.getCause();
+        }
+        return current;
+    }
+}
\ No newline at end of file
@@ -1,201 +1,337 @@
 package service;
 
 import com.google.firebase.database.*;
+import config.ServerConfig;
+import model.CompactProgress;
+import model.CourseLayout;
 import model.CourseProgress;
+import model.CourseSummary;
+import model.EnrolledCourse;
+import model.LearnerRecord;
+import model.ProgressPatch;
+import model.ProgressStatus;
 
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
 
 public class LearnerService {
     private final DatabaseReference learnerRef;
     private final CourseService courseService;
+    private final ExistenceCache learnerExistence;
+    private final ProgressWriteBuffer progressWrites;
+    private final ProgressCache progressCache;
+    private final EnrollmentMigration enrollmentMigration;
+    private final CourseLayouts courseLayouts;
+    private final int enrolledFetchConcurrency;
     
     public LearnerService() {
         this.learnerRef = FirebaseDatabase.getInstance().getReference("learners");
         this.courseService = new CourseService();
+        this.learnerExistence = ExistenceCache.learners();
+        this.progressWrites = ProgressWriteBuffer.getInstance();
+        this.progressCache = ProgressCache.getInstance();
+        this.enrollmentMigration = EnrollmentMigration.getInstance();
+        this.courseLayouts = CourseLayouts.getInstance();
+        this.enrolledFetchConcurrency = ServerConfig.getInt("kf.enrolledCourses.fetchConcurrency", 8);
     }
     
-    public boolean enrollInCourse(String username, String courseId) throws Exception {
-        // Check if the user is already enrolled
-        List<String> enrollments = getEnrollments(username);
+    public LearnerRecord loadLearnerRecord(String username) throws Exception {
+        return FirebaseFutures.await(loadLearnerRecordAsync(username));
+    }
+    
+    // Read learners/{username} once and keep what the learner endpoints need; null if there is
+    // no such learner. Callers share the result within a request instead of re-reading subtrees.
+    public CompletableFuture<LearnerRecord> loadLearnerRecordAsync(String username) {
+        // Learners recently found missing aren't read again until the negative entry expires
+        if (Boolean.FALSE.equals(learnerExistence.get(username))) {
+            return CompletableFuture.completedFuture(null);
+        }
         
-        if (enrollments != null && enrollments.contains(courseId)) {
-            return false; // Already enrolled
+        // Buffered progress goes out first so progress and last accessed dates are current
+        return progressWrites.flushLearner(username).thenCompose(flushed -> FirebaseFutures.read(learnerRef.child(username))).thenApply(snapshot -> {
+            learnerExistence.put(username, snapshot.exists());
+            if (!snapshot.exists()) {
+                return null;
+            }
+            
+            LearnerRecord record = new LearnerRecord(username);
+            record.setEmail(snapshot.child("email").getValue(String.class));
+            
+            for (DataSnapshot enrollment : snapshot.child("enrollments").getChildren()) {
+                String courseId = EnrollmentMigration.courseId(enrollment);
+                if (courseId != null) {
+                    record.addEnrollment(courseId);
+                }
+            }
+            if (!enrollmentMigration.isMigrated()) {
+                migrateEnrollments(username, snapshot.child("enrollments"));
+            }
+            
+            for (DataSnapshot progress : snapshot.child("progress").getChildren()) {
+                Integer value = progress.getValue(Integer.class);
+                if (value != null) {
+                    record.setProgress(progress.getKey(), value);
+                }
+            }
+            
+            for (DataSnapshot lastAccessed : snapshot.child("lastAccessed").getChildren()) {
+                record.setLastAccessed(lastAccessed.getKey(), lastAccessed.getValue(String.class));
+            }
+            
+            for (DataSnapshot enrollmentDate : snapshot.child("enrollmentDates").getChildren()) {
+                record.setEnrollmentDate(enrollmentDate.getKey(), enrollmentDate.getValue(String.class));
+            }
+            
+            return record;
+        });
+    }
+    
+    public boolean enrollInCourse(String username, String courseId) throws Exception {
+        return FirebaseFutures.await(enrollInCourseAsync(username, courseId));
+    }
+    
+    public CompletableFuture<Boolean> enrollInCourseAsync(String username, String courseId) {
+        return loadLearnerRecordAsync(username).thenCompose(record ->
+            enrollInCourseAsync(record != null ? record : new LearnerRecord(username), courseId));
+    }
+    
+    // Epoch millis of a "yyyy-MM-dd'T'HH:mm:ss'Z'" date; 0 when missing or unparseable
+    static long toMillis(String date) {
+        if (date == null) {
+            return 0;
+        }
+        try {
+            return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'").parse(date).getTime();
+        } catch (ParseException e) {
+            return 0;
+        }
+    }
+    
+    // Best effort: the learner's push() enrollments are rewritten as keyed ones, or left for the
+    // next read if this fails
+    private void migrateEnrollments(String username, DataSnapshot enrollments) {
+        Map<String, Object> updates = EnrollmentMigration.keyedUpdates(enrollments);
+        if (updates.isEmpty()) {
+            return;
         }
         
-        // Enroll the user
-        DatabaseReference userEnrollmentsRef = learnerRef.child(username).child("enrollments");
-        userEnrollmentsRef.push().setValueAsync(courseId).get();
+        FirebaseFutures.toCompletable(learnerRef.child(username).updateChildrenAsync(updates))
+            .exceptionally(e -> {
+                System.err.println("Enrollment migration for " + username + " failed: " + FirebaseFutures.unwrap(e).getMessage());
+                return null;
+            });
+    }
+    
+    // Whether the learner is enrolled, from the single enrollments/{courseId} entry; for callers
+    // that already know the learner exists and don't need the rest of the record. Until the
+    // migration has run, a learner may still have the course as a push() child.
+    public CompletableFuture<Boolean> isEnrolledAsync(String username, String courseId) {
+        DatabaseReference enrollmentsRef = learnerRef.child(username).child("enrollments");
         
-        // Set initial progress to 0%
-        DatabaseReference progressRef = learnerRef.child(username).child("progress").child(courseId);
-        progressRef.setValueAsync(0).get();
+        return FirebaseFutures.read(enrollmentsRef.child(courseId)).thenCompose(snapshot -> {
+            if (snapshot.exists() || enrollmentMigration.isMigrated()) {
+                return CompletableFuture.completedFuture(snapshot.exists());
+            }
+            return FirebaseFutures.read(enrollmentsRef.orderByValue().equalTo(courseId)).thenApply(DataSnapshot::exists);
+        });
+    }
+    
+    public CompletableFuture<Boolean> enrollInCourseAsync(LearnerRecord record, String courseId) {
+        // Check if the user is already enrolled
+        if (record.isEnrolled(courseId)) {
+            return CompletableFuture.completedFuture(false); // Already enrolled
+        }
         
         // Set enrollment date
         String enrollmentDate = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'")
             .format(new Date());
         
-        DatabaseReference enrollmentDateRef = learnerRef.child(username)
-            .child("enrollmentDates").child(courseId);
-        enrollmentDateRef.setValueAsync(enrollmentDate).get();
-        
-        // Set as last accessed date too
-        DatabaseReference lastAccessedRef = learnerRef.child(username)
-            .child("lastAccessed").child(courseId);
-        lastAccessedRef.setValueAsync(enrollmentDate).get();
-        
-        // Update course's students count
-        courseService.incrementStudentCount(courseId);
-        
-        return true;
+        // The enrollment entry, initial progress of 0%, the enrollment date (also the last
+        // accessed date) and the recency entry are written by one transaction on the learner,
+        // which also decides between concurrent requests: the entry is only added if no request
+        // has added it yet, so the learner is enrolled and counted once, and never half enrolled
+        long now = System.currentTimeMillis();
+        return FirebaseFutures.transact(learnerRef.child(record.getUsername()), learner -> {
+            if (isEnrolled(learner.child("enrollments"), courseId)) {
+                return Transaction.abort();
+            }
+            learner.child("enrollments").child(courseId).setValue(true);
+            learner.child("progress").child(courseId).setValue(0);
+            learner.child("enrollmentDates").child(courseId).setValue(enrollmentDate);
+            learner.child("lastAccessed").child(courseId).setValue(enrollmentDate);
+            learner.child("recency").child(courseId).setValue(now);
+            return Transaction.success(learner);
+        }).thenApply(committed -> {
+            record.addEnrollment(courseId);
+            if (!committed) {
+                return false; // Already enrolled
+            }
+            
+            record.setProgress(courseId, 0);
+            record.setEnrollmentDate(courseId, enrollmentDate);
+            record.setLastAccessed(courseId, enrollmentDate);
+            
+            // Update course's students count
+            courseService.incrementStudentCount(courseId);
+            return true;
+        });
+    }
+    
+    // Keyed entry, or a push() child holding the course id from before the migration
+    private static boolean isEnrolled(MutableData enrollments, String courseId) {
+        if (enrollments.hasChild(courseId)) {
+            return true;
+        }
+        for (MutableData enrollment : enrollments.getChildren()) {
+            if (courseId.equals(enrollment.getValue())) {
+                return true;
+            }
+        }
+        return false;
     }
     
     public List<String> getEnrollments(String username) throws Exception {
-        final List<String> enrolledCourseIds = new ArrayList<>();
-        final CountDownLatch latch = new CountDownLatch(1);
-        
-        DatabaseReference enrollmentsRef = learnerRef.child(username).child("enrollments");
+        return FirebaseFutures.await(getEnrollmentsAsync(username));
+    }
+    
+    public CompletableFuture<List<String>> getEnrollmentsAsync(String username) {
+        return loadLearnerRecordAsync(username).thenApply(record ->
+            record != null ? record.getEnrollments() : new ArrayList<>());
+    }
+    
+    public List<EnrolledCourse> getEnrolledCourses(String username) throws Exception {
+        return FirebaseFutures.await(getEnrolledCoursesAsync(username));
+    }
+    
+    public CompletableFuture<List<EnrolledCourse>> getEnrolledCoursesAsync(String username) {
+        CompletableFuture<List<String>> recent = getRecentCourseIdsAsync(username, null);
+        return loadLearnerRecordAsync(username).thenCompose(record -> record == null
+            ? CompletableFuture.completedFuture(new ArrayList<>())
+            : recent.thenCompose(indexed -> getEnrolledCoursesAsync(record, orderEnrollments(record, indexed, null))));
+    }
+    
+    // Course ids from learners/{username}/recency (courseId -> epoch millis of the last
+    // enrollment or progress write), most recent first and at most limit of them (null for all).
+    // The database returns them in order, so nothing is sorted or parsed here.
+    public CompletableFuture<List<String>> getRecentCourseIdsAsync(String username, Integer limit) {
+        Query query = learnerRef.child(username).child("recency").orderByValue();
+        if (limit != null) {
+            query = query.limitToLast(limit);
+        }
         
-        enrollmentsRef.addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(DataSnapshot dataSnapshot) {
-                if (dataSnapshot.exists()) {
-                    for (DataSnapshot enrollment : dataSnapshot.getChildren()) {
-                        String courseId = enrollment.getValue(String.class);
-                        if (courseId != null) {
-                            enrolledCourseIds.add(courseId);
-                        }
-                    }
-                }
-                latch.countDown();
-            }
-
-            @Override
-            public void onCancelled(DatabaseError databaseError) {
-                latch.countDown();
+        // Buffered progress goes out first so its recency entries count
+        Query recencyQuery = query;
+        return progressWrites.flushLearner(username).thenCompose(flushed -> FirebaseFutures.read(recencyQuery)).thenApply(snapshot -> {
+            // Children come oldest first
+            Deque<String> courseIds = new ArrayDeque<>();
+            for (DataSnapshot entry : snapshot.getChildren()) {
+                courseIds.addFirst(entry.getKey());
             }
+            return new ArrayList<>(courseIds);
         });
-        
-        latch.await();
-        return enrolledCourseIds;
     }
     
-    public List<Map<String, Object>> getEnrolledCourses(String username) throws Exception {
-        List<String> enrolledCourseIds = getEnrollments(username);
-        
-        if (enrolledCourseIds.isEmpty()) {
-            return new ArrayList<>();
-        }
-        
-        // Get details for each enrolled course
-        final Map<String, CountDownLatch> courseLatchMap = new HashMap<>();
-        final Map<String, Map<String, Object>> courseDataMap = new HashMap<>();
-        
-        CountDownLatch allCoursesLatch = new CountDownLatch(1);
-        
-        DatabaseReference coursesRef = FirebaseDatabase.getInstance().getReference("courses");
-        
-        coursesRef.addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(DataSnapshot dataSnapshot) {
-                for (DataSnapshot courseSnapshot : dataSnapshot.getChildren()) {
-                    String courseId = courseSnapshot.getKey();
-                    
-                    if (enrolledCourseIds.contains(courseId)) {
-                        Map<String, Object> course = new HashMap<>();
-                        course.put("id", courseId);
-                        
-                        for (DataSnapshot field : courseSnapshot.getChildren()) {
-                            course.put(field.getKey(), field.getValue());
-                        }
-                        
-                        // Get progress data
-                        DatabaseReference progressRef = learnerRef
-                            .child(username).child("progress").child(courseId);
-                        
-                        CountDownLatch progressLatch = new CountDownLatch(1);
-                        courseLatchMap.put(courseId, progressLatch);
-                        
-                        progressRef.addListenerForSingleValueEvent(new ValueEventListener() {
-                            @Override
-                            public void onDataChange(DataSnapshot progressSnapshot) {
-                                if (progressSnapshot.exists()) {
-                                    course.put("progress", progressSnapshot.getValue(Integer.class));
-                                } else {
-                                    course.put("progress", 0); // Default progress
-                                }
-                                
-                                // Get last accessed time 
-                                DatabaseReference lastAccessedRef = learnerRef
-                                    .child(username).child("lastAccessed").child(courseId);
-                                
-                                lastAccessedRef.addListenerForSingleValueEvent(new ValueEventListener() {
-                                    @Override
-                                    public void onDataChange(DataSnapshot lastAccessedSnapshot) {
-                                        if (lastAccessedSnapshot.exists()) {
-                                            course.put("lastAccessed", lastAccessedSnapshot.getValue(String.class));
-                                        } else {
-                                            course.put("lastAccessed", new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'").format(new Date()));
-                                        }
-                                        
-                                        courseDataMap.put(courseId, course);
-                                        progressLatch.countDown();
-                                    }
-                                    
-                                    @Override
-                                    public void onCancelled(DatabaseError error) {
-                                        course.put("lastAccessed", new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'").format(new Date()));
-                                        courseDataMap.put(courseId, course);
-                                        progressLatch.countDown();
-                                    }
-                                });
-                            }
-                            
-                            @Override
-                            public void onCancelled(DatabaseError error) {
-                                course.put("progress", 0);
-                                course.put("lastAccessed", new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'").format(new Date()));
-                                courseDataMap.put(courseId, course);
-                                progressLatch.countDown();
-                            }
-                        });
-                    }
-                }
-                
-                allCoursesLatch.countDown();
+    // The learner's enrollments in the recency index's order. Enrollments the index doesn't have
+    // yet (until RecencyBackfill has run) follow, most recently accessed first.
+    public List<String> orderEnrollments(LearnerRecord record, List<String> recentCourseIds, Integer limit) {
+        int max = limit != null ? limit : Integer.MAX_VALUE;
+        Set<String> ordered = new LinkedHashSet<>();
+        for (String courseId : recentCourseIds) {
+            if (ordered.size() >= max) {
+                break;
             }
-            
-            @Override
-            public void onCancelled(DatabaseError databaseError) {
-                allCoursesLatch.countDown();
+            if (record.isEnrolled(courseId)) {
+                ordered.add(courseId);
             }
-        });
+        }
+        if (ordered.size() >= max) {
+            return new ArrayList<>(ordered);
+        }
         
-        allCoursesLatch.await();
+        // Each date is parsed once, not on every comparison
+        Map<String, Long> unindexed = new HashMap<>();
+        for (String courseId : record.getEnrollments()) {
+            if (!ordered.contains(courseId)) {
+                String date = record.getLastAccessed(courseId);
+                unindexed.put(courseId, toMillis(date != null ? date : record.getEnrollmentDates().get(courseId)));
+            }
+        }
+        unindexed.entrySet().stream()
+            .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+            .limit(max - ordered.size())
+            .forEach(entry -> ordered.add(entry.getKey()));
+        return new ArrayList<>(ordered);
+    }
+    
+    // Summaries of the given enrolled courses, in that order, straight from the catalog, or null
+    // while the catalog is still loading
+    public List<CourseSummary> getEnrolledSummaries(List<String> courseIds) {
+        if (!courseService.isCatalogReady()) {
+            return null;
+        }
         
-        // Wait for individual course data to be fetched
-        for (String courseId : courseLatchMap.keySet()) {
-            try {
-                courseLatchMap.get(courseId).await(5, TimeUnit.SECONDS);
-            } catch (InterruptedException e) {
-                System.err.println("Timeout waiting for course data: " + courseId);
+        List<CourseSummary> summaries = new ArrayList<>();
+        for (String courseId : courseIds) {
+            CourseSummary summary = courseService.getCatalogSummary(courseId);
+            if (summary != null) {
+                summaries.add(summary);
             }
         }
+        return summaries;
+    }
+    
+    // The given enrolled courses, in that order
+    public CompletableFuture<List<EnrolledCourse>> getEnrolledCoursesAsync(LearnerRecord record, List<String> courseIds) {
+        if (courseIds.isEmpty()) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
         
-        // Sort by last accessed date (most recent first)
-        List<Map<String, Object>> enrolledCourses = new ArrayList<>(courseDataMap.values());
-        enrolledCourses.sort((c1, c2) -> {
-            String date1 = (String) c1.getOrDefault("lastAccessed", "");
-            String date2 = (String) c2.getOrDefault("lastAccessed", "");
-            return date2.compareTo(date1); // Descending order
+        // Fetch only the enrolled courses, by id, a few at a time; progress and last accessed
+        // time come from the learner record already in memory
+        String now = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'").format(new Date());
+        return FirebaseFutures.mapBounded(courseIds, enrolledFetchConcurrency, courseId ->
+            courseService.getCourseSummaryAsync(courseId)
+                .thenApply(summary -> summary != null ? toEnrolledCourse(summary, record, now) : null)
+                .exceptionally(e -> {
+                    System.err.println("Failed to load enrolled course " + courseId + ": " + e.getMessage());
+                    return null;
+                })
+        ).thenApply(courses -> {
+            List<EnrolledCourse> enrolledCourses = new ArrayList<>();
+            for (EnrolledCourse course : courses) {
+                if (course != null) {
+                    enrolledCourses.add(course);
+                }
+            }
+            return enrolledCourses;
         });
-        
-        return enrolledCourses;
     }
     
-    public void updateCourseProgress(CourseProgress progress) throws Exception {
+    private EnrolledCourse toEnrolledCourse(CourseSummary summary, LearnerRecord record, String now) {
+        String lastAccessed = record.getLastAccessed(summary.getId());
+        return new EnrolledCourse(
+            summary.getId(),
+            summary.getTitle(),
+            summary.getDescription(),
+            summary.getCategory(),
+            summary.getThumbnailUrl(),
+            summary.getCreatorUsername(),
+            summary.getCreatedAt(),
+            summary.getCertificateLink(),
+            courseService.getStudentCount(summary),
+            record.getProgress(summary.getId()),
+            lastAccessed != null ? lastAccessed : now);
+    }
+    
+    public ProgressStatus updateCourseProgress(CourseProgress progress) throws Exception {
+        return FirebaseFutures.await(updateCourseProgressAsync(progress));
+    }
+    
+    // Write the learner's whole progress in a course. overallProgress and certificateUnlocked
+    // are worked out here from the lessons and quizzes rather than taken from the client.
+    public CompletableFuture<ProgressStatus> updateCourseProgressAsync(CourseProgress progress) {
         String username = progress.getUsername();
         String courseId = progress.getCourseId();
         
@@ -203,96 +339,257 @@ public class LearnerService {
         String currentDateTime = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'").format(new Date());
         progress.setLastUpdated(currentDateTime);
         
-        // Create the updates map
-        Map<String, Object> updates = new HashMap<>();
-        updates.put("completedLessons", progress.getCompletedLessons());
-        updates.put("quizAnswers", progress.getQuizAnswers());
-        updates.put("quizSubmitted", progress.getQuizSubmitted());
-        updates.put("quizResults", progress.getQuizResults());
-        updates.put("certificateUnlocked", progress.isCertificateUnlocked());
-        updates.put("overallProgress", progress.getOverallProgress());
-        updates.put("lastUpdated", currentDateTime);
-        
-        // Update last accessed time for course
-        learnerRef.child(username).child("lastAccessed").child(courseId)
-            .setValueAsync(currentDateTime).get();
+        return courseLayouts.getAsync(courseId).thenCompose(layout -> {
+            if (layout == null) {
+                return CompletableFuture.<ProgressStatus>failedFuture(new Exception("Course not found"));
+            }
+            
+            // The current progress only matters for a certificate unlocked earlier; it is
+            // usually cached from when the learner opened the course
+            return getCourseProgressAsync(username, courseId).thenCompose(current -> {
+                CompactProgress counted = CompactProgress.fromKnown(progress, layout);
+                counted.setCertificateUnlocked(current.isCertificateUnlocked());
+                counted.unlockCertificateIfComplete();
+                progress.setOverallProgress(counted.getOverallProgress());
+                progress.setCertificateUnlocked(counted.isCertificateUnlocked());
+                
+                // The progress fields and the course's last accessed time, relative to learners/{username}
+                String progressPath = "courseProgress/" + courseId + "/";
+                Map<String, Object> updates = new HashMap<>();
+                updates.put(progressPath + "completedLessons", toLessonSet(progress.getCompletedLessons()));
+                updates.put(progressPath + "quizAnswers", progress.getQuizAnswers());
+                updates.put(progressPath + "quizSubmitted", progress.getQuizSubmitted());
+                updates.put(progressPath + "quizResults", progress.getQuizResults());
+                putStatus(updates, courseId, counted);
+                updates.put("lastAccessed/" + courseId, currentDateTime);
+                updates.put("recency/" + courseId, System.currentTimeMillis());
+                
+                // The whole record is known, so the cached copy is simply replaced
+                progressCache.replace(username, courseId, layout, CompactProgress.from(progress, layout));
+                
+                // Merged with the learner's other recent updates and written once they pause
+                return progressWrites.write(username, courseId, updates).thenApply(ignored -> status(counted));
+            });
+        });
+    }
+    
+    // Apply a progress delta as writes to the individual lessons and quizzes it names, so the
+    // write stays the same size however far through the course the learner is. The new
+    // overallProgress comes from the cached progress's counts, adjusted by just this event.
+    public CompletableFuture<ProgressStatus> patchCourseProgressAsync(String username, String courseId, ProgressPatch patch) {
+        String currentDateTime = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'").format(new Date());
         
-        // Update the progress
-        learnerRef.child(username).child("courseProgress").child(courseId)
-            .updateChildrenAsync(updates).get();
+        return courseLayouts.getAsync(courseId).thenCompose(layout -> {
+            if (layout == null) {
+                return CompletableFuture.<ProgressStatus>failedFuture(new Exception("Course not found"));
+            }
+            
+            // Loads the current progress into the cache unless it is there already
+            return getCourseProgressAsync(username, courseId).thenCompose(current -> {
+                CompactProgress cached = progressCache.update(username, courseId, layout, progress ->
+                    applyPatch(progress, layout, patch, currentDateTime) ? progress : null);
+                
+                // Progress that doesn't fit the compact form is counted from the parts that do
+                CompactProgress counted = cached;
+                if (counted == null) {
+                    counted = CompactProgress.fromKnown(current, layout);
+                    applyPatch(counted, layout, patch, currentDateTime);
+                }
+                
+                String progressPath = "courseProgress/" + courseId + "/";
+                Map<String, Object> updates = new HashMap<>();
+                if (patch.completedLessons() != null) {
+                    for (String lessonId : patch.completedLessons()) {
+                        updates.put(progressPath + "completedLessons/" + lessonId, true);
+                    }
+                }
+                if (patch.uncompletedLessons() != null) {
+                    for (String lessonId : patch.uncompletedLessons()) {
+                        updates.put(progressPath + "completedLessons/" + lessonId, null);
+                    }
+                }
+                putEach(updates, progressPath + "quizAnswers/", patch.quizAnswers());
+                putEach(updates, progressPath + "quizSubmitted/", patch.quizSubmitted());
+                putEach(updates, progressPath + "quizResults/", patch.quizResults());
+                putStatus(updates, courseId, counted);
+                updates.put("lastAccessed/" + courseId, currentDateTime);
+                updates.put("recency/" + courseId, System.currentTimeMillis());
+                
+                ProgressStatus status = status(counted);
+                return progressWrites.write(username, courseId, updates).thenApply(ignored -> status);
+            });
+        });
+    }
+    
+    // Apply the patch to compact progress; false if some of it doesn't fit the compact form
+    private static boolean applyPatch(CompactProgress progress, CourseLayout layout, ProgressPatch patch, String lastUpdated) {
+        boolean fits = true;
+        if (patch.completedLessons() != null) {
+            for (String lessonId : patch.completedLessons()) {
+                fits &= progress.setLessonCompleted(layout, lessonId, true);
+            }
+        }
+        if (patch.uncompletedLessons() != null) {
+            for (String lessonId : patch.uncompletedLessons()) {
+                fits &= progress.setLessonCompleted(layout, lessonId, false);
+            }
+        }
+        if (patch.quizAnswers() != null) {
+            for (Map.Entry<String, Object> answer : patch.quizAnswers().entrySet()) {
+                fits &= progress.setQuizAnswer(layout, answer.getKey(), answer.getValue());
+            }
+        }
+        if (patch.quizSubmitted() != null) {
+            for (Map.Entry<String, Object> submitted : patch.quizSubmitted().entrySet()) {
+                fits &= progress.setQuizSubmitted(layout, submitted.getKey(), submitted.getValue());
+            }
+        }
+        if (patch.quizResults() != null) {
+            for (Map.Entry<String, Object> result : patch.quizResults().entrySet()) {
+                fits &= progress.setQuizResult(layout, result.getKey(), result.getValue());
+            }
+        }
+        progress.unlockCertificateIfComplete();
+        progress.setLastUpdated(lastUpdated);
+        return fits;
+    }
+    
+    // The computed fields, plus progress/{courseId}, which the enrolled course list shows
+    private static void putStatus(Map<String, Object> updates, String courseId, CompactProgress progress) {
+        String progressPath = "courseProgress/" + courseId + "/";
+        updates.put(progressPath + "overallProgress", progress.getOverallProgress());
+        updates.put(progressPath + "certificateUnlocked", progress.isCertificateUnlocked());
+        updates.put(progressPath + "lastUpdated", progress.getLastUpdated());
+        updates.put("progress/" + courseId, progress.getOverallProgress());
+    }
+    
+    private static ProgressStatus status(CompactProgress progress) {
+        return new ProgressStatus(progress.getOverallProgress(), progress.isCertificateUnlocked(), progress.getLastUpdated());
+    }
+    
+    private static void putEach(Map<String, Object> updates, String path, Map<String, Object> values) {
+        if (values != null) {
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                updates.put(path + entry.getKey(), entry.getValue());
+            }
+        }
+    }
+    
+    // Completed lessons are stored as lessonId -> true, so one lesson can be added or removed
+    // without rewriting the rest
+    private static Map<String, Object> toLessonSet(List<String> lessonIds) {
+        Map<String, Object> lessons = new HashMap<>();
+        for (String lessonId : lessonIds) {
+            lessons.put(lessonId, true);
+        }
+        return lessons;
     }
     
     public CourseProgress getCourseProgress(String username, String courseId) throws Exception {
-        final CourseProgress progress = new CourseProgress(courseId, username);
-        final CountDownLatch latch = new CountDownLatch(1);
-        
+        return FirebaseFutures.await(getCourseProgressAsync(username, courseId));
+    }
+    
+    // Served from the progress cache when it holds the course; otherwise read and, if it fits,
+    // cached compactly. Either way overallProgress is counted from the completed items whenever
+    // the course layout is known.
+    public CompletableFuture<CourseProgress> getCourseProgressAsync(String username, String courseId) {
+        return courseLayouts.getAsync(courseId).thenCompose(layout -> {
+            CompactProgress cached = layout != null ? progressCache.get(username, courseId, layout) : null;
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached.toCourseProgress(courseId, username, layout));
+            }
+            
+            long version = progressCache.version(username, courseId);
+            return readCourseProgressAsync(username, courseId).thenApply(progress -> {
+                CompactProgress compact = layout != null ? CompactProgress.from(progress, layout) : null;
+                if (compact == null) {
+                    return progress;
+                }
+                progressCache.fill(username, courseId, version, layout, compact);
+                return compact.toCourseProgress(courseId, username, layout);
+            });
+        });
+    }
+    
+    private CompletableFuture<CourseProgress> readCourseProgressAsync(String username, String courseId) {
         DatabaseReference progressRef = learnerRef.child(username).child("courseProgress").child(courseId);
         
-        progressRef.addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(DataSnapshot snapshot) {
-                if (snapshot.exists()) {
-                    // Get completed lessons
-                    if (snapshot.hasChild("completedLessons")) {
-                        List<String> completedLessons = new ArrayList<>();
-                        for (DataSnapshot lessonSnapshot : snapshot.child("completedLessons").getChildren()) {
-                            completedLessons.add(lessonSnapshot.getValue(String.class));
-                        }
-                        progress.setCompletedLessons(completedLessons);
-                    }
-                    
-                    // Get quiz answers
-                    if (snapshot.hasChild("quizAnswers")) {
-                        Map<String, Object> quizAnswers = new HashMap<>();
-                        for (DataSnapshot quizSnapshot : snapshot.child("quizAnswers").getChildren()) {
-                            quizAnswers.put(quizSnapshot.getKey(), quizSnapshot.getValue());
-                        }
-                        progress.setQuizAnswers(quizAnswers);
-                    }
-                    
-                    // Get quiz submitted status
-                    if (snapshot.hasChild("quizSubmitted")) {
-                        Map<String, Object> quizSubmitted = new HashMap<>();
-                        for (DataSnapshot quizSnapshot : snapshot.child("quizSubmitted").getChildren()) {
-                            quizSubmitted.put(quizSnapshot.getKey(), quizSnapshot.getValue());
+        // Buffered updates go out first so the read sees them
+        return progressWrites.flush(username, courseId).thenCompose(flushed -> FirebaseFutures.read(progressRef)).thenApply(snapshot -> {
+            final CourseProgress progress = new CourseProgress(courseId, username);
+            
+            if (snapshot.exists()) {
+                // Get completed lessons
+                if (snapshot.hasChild("completedLessons")) {
+                    Set<String> completedLessons = new LinkedHashSet<>();
+                    Map<String, Object> keyedLessons = new HashMap<>();
+                    for (DataSnapshot lessonSnapshot : snapshot.child("completedLessons").getChildren()) {
+                        Object value = lessonSnapshot.getValue();
+                        if (value instanceof String lessonId) {
+                            // Stored as a list before lessons were keyed by id; rewritten below
+                            completedLessons.add(lessonId);
+                            keyedLessons.put("completedLessons/" + lessonSnapshot.getKey(), null);
+                            keyedLessons.put("completedLessons/" + lessonId, true);
+                        } else if (Boolean.TRUE.equals(value)) {
+                            completedLessons.add(lessonSnapshot.getKey());
                         }
-                        progress.setQuizSubmitted(quizSubmitted);
                     }
+                    progress.setCompletedLessons(new ArrayList<>(completedLessons));
                     
-                    // Get quiz results
-                    if (snapshot.hasChild("quizResults")) {
-                        Map<String, Object> quizResults = new HashMap<>();
-                        for (DataSnapshot quizSnapshot : snapshot.child("quizResults").getChildren()) {
-                            quizResults.put(quizSnapshot.getKey(), quizSnapshot.getValue());
-                        }
-                        progress.setQuizResults(quizResults);
+                    // Key list entries by lesson id before anything is patched on top, or
+                    // un-completing a lesson would leave its list entry behind. Entry by
+                    // entry, so keyed lessons written in the meantime are kept.
+                    if (!keyedLessons.isEmpty()) {
+                        Map<String, Object> updates = new HashMap<>();
+                        keyedLessons.forEach((path, value) -> updates.put("courseProgress/" + courseId + "/" + path, value));
+                        progressWrites.write(username, courseId, updates);
                     }
-                    
-                    // Get certificate unlock status
-                    if (snapshot.hasChild("certificateUnlocked")) {
-                        progress.setCertificateUnlocked(snapshot.child("certificateUnlocked").getValue(Boolean.class));
+                }
+                
+                // Get quiz answers
+                if (snapshot.hasChild("quizAnswers")) {
+                    Map<String, Object> quizAnswers = new HashMap<>();
+                    for (DataSnapshot quizSnapshot : snapshot.child("quizAnswers").getChildren()) {
+                        quizAnswers.put(quizSnapshot.getKey(), quizSnapshot.getValue());
                     }
-                    
-                    // Get overall progress
-                    if (snapshot.hasChild("overallProgress")) {
-                        progress.setOverallProgress(snapshot.child("overallProgress").getValue(Integer.class));
+                    progress.setQuizAnswers(quizAnswers);
+                }
+                
+                // Get quiz submitted status
+                if (snapshot.hasChild("quizSubmitted")) {
+                    Map<String, Object> quizSubmitted = new HashMap<>();
+                    for (DataSnapshot quizSnapshot : snapshot.child("quizSubmitted").getChildren()) {
+                        quizSubmitted.put(quizSnapshot.getKey(), quizSnapshot.getValue());
                     }
-                    
-                    // Get last updated time
-                    if (snapshot.hasChild("lastUpdated")) {
-                        progress.setLastUpdated(snapshot.child("lastUpdated").getValue(String.class));
+                    progress.setQuizSubmitted(quizSubmitted);
+                }
+                
+                // Get quiz results
+                if (snapshot.hasChild("quizResults")) {
+                    Map<String, Object> quizResults = new HashMap<>();
+                    for (DataSnapshot quizSnapshot : snapshot.child("quizResults").getChildren()) {
+                        quizResults.put(quizSnapshot.getKey(), quizSnapshot.getValue());
                     }
+                    progress.setQuizResults(quizResults);
+                }
+                
+                // Get certificate unlock status
+                if (snapshot.hasChild("certificateUnlocked")) {
+                    progress.setCertificateUnlocked(snapshot.child("certificateUnlocked").getValue(Boolean.class));
+                }
+                
+                // Get overall progress
+                if (snapshot.hasChild("overallProgress")) {
+                    progress.setOverallProgress(snapshot.child("overallProgress").getValue(Integer.class));
+                }
+                
+                // Get last updated time
+                if (snapshot.hasChild("lastUpdated")) {
+                    progress.setLastUpdated(snapshot.child("lastUpdated").getValue(String.class));
                 }
-                latch.countDown();
             }
             
-            @Override
-            public void onCancelled(DatabaseError error) {
-                latch.countDown();
-            }
+            return progress;
         });
-        
-        latch.await();
-        return progress;
     }
 }
\ No newline at end of file
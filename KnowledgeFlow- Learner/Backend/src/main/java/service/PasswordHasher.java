@@ -0,0 +1,163 @@
+package service;
+
+import config.ServerConfig;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Password hashing (PBKDF2-HMAC-SHA256) on its own small thread pool. Hashing is deliberately
+// slow, so a burst of logins or signups queues here instead of occupying the request threads
+// that serve course reads; once the queue is full new work is refused with a
+// RejectedExecutionException, which the controllers turn into a 503.
+//
+// Stored as pbkdf2$<iterations>$<salt>$<hash>. Anything else is a plaintext password from
+// before hashing; verify() still accepts it and reports that it should be rehashed, as it does
+// for hashes made with fewer iterations than currently configured.
+//
+// kf.passwordHash.iterations (default 310000), kf.passwordHash.threads (default half the
+// cores), kf.passwordHash.queueSize (default 64).
+public class PasswordHasher {
+    private static final String PREFIX = "pbkdf2$";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    
+    private final int iterations;
+    private final ThreadPoolExecutor executor;
+    private final SecureRandom random = new SecureRandom();
+    
+    private final AtomicLong hashed = new AtomicLong();
+    private final AtomicLong verified = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    
+    public record Verification(boolean matches, boolean needsRehash) {}
+    
+    private PasswordHasher() {
+        this.iterations = ServerConfig.getInt("kf.passwordHash.iterations", 310000);
+        int threads = ServerConfig.getInt("kf.passwordHash.threads",
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        int queueSize = ServerConfig.getInt("kf.passwordHash.queueSize", 64);
+        
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueSize), runnable -> {
+                Thread thread = new Thread(runnable, "password-hash-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+    
+    private static class Holder {
+        private static final PasswordHasher INSTANCE = new PasswordHasher();
+    }
+    
+    public static PasswordHasher getInstance() {
+        return Holder.INSTANCE;
+    }
+    
+    public CompletableFuture<String> hashAsync(String password) {
+        return submit(() -> {
+            byte[] salt = new byte[SALT_BYTES];
+            random.nextBytes(salt);
+            String hash = encode(derive(password, salt, iterations));
+            hashed.incrementAndGet();
+            return PREFIX + iterations + "$" + encode(salt) + "$" + hash;
+        });
+    }
+    
+    public CompletableFuture<Verification> verifyAsync(String password, String stored) {
+        if (!stored.startsWith(PREFIX)) {
+            // Legacy plaintext: nothing to compute, so don't take a hashing slot
+            boolean matches = MessageDigest.isEqual(
+                stored.getBytes(StandardCharsets.UTF_8), password.getBytes(StandardCharsets.UTF_8));
+            return CompletableFuture.completedFuture(new Verification(matches, matches));
+        }
+        
+        // A malformed hash can't match any password, so it fails like a wrong one
+        String[] parts = stored.split("\\$");
+        int storedIterations;
+        byte[] salt;
+        byte[] expected;
+        try {
+            if (parts.length != 4) {
+                return CompletableFuture.completedFuture(new Verification(false, false));
+            }
+            storedIterations = Integer.parseInt(parts[1]);
+            salt = Base64.getDecoder().decode(parts[2]);
+            expected = Base64.getDecoder().decode(parts[3]);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(new Verification(false, false));
+        }
+        if (storedIterations <= 0 || salt.length == 0 || expected.length == 0) {
+            return CompletableFuture.completedFuture(new Verification(false, false));
+        }
+        
+        return submit(() -> {
+            boolean matches = MessageDigest.isEqual(expected, derive(password, salt, storedIterations));
+            verified.incrementAndGet();
+            return new Verification(matches, matches && storedIterations < iterations);
+        });
+    }
+    
+    public Map<String, Object> getMetrics() {
+        long operations = hashed.get() + verified.get();
+        
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("iterations", iterations);
+        metrics.put("threads", executor.getMaximumPoolSize());
+        metrics.put("active", executor.getActiveCount());
+        metrics.put("queued", executor.getQueue().size());
+        metrics.put("queueCapacity", executor.getQueue().size() + executor.getQueue().remainingCapacity());
+        metrics.put("hashed", hashed.get());
+        metrics.put("verified", verified.get());
+        metrics.put("rejected", rejected.get());
+        metrics.put("averageMillis", operations > 0 ? busyNanos.get() / operations / 1_000_000.0 : 0.0);
+        return metrics;
+    }
+    
+    private <T> CompletableFuture<T> submit(Supplier<T> work) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                long start = System.nanoTime();
+                try {
+                    return work.get();
+                } finally {
+                    busyNanos.addAndGet(System.nanoTime() - start);
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
+    private static byte[] derive(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2WithHmacSHA256 is unavailable", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+    
+    private static String encode(byte[] bytes) {
+        return Base64.getEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,100 @@
+package service;
+
+import config.ServerConfig;
+import model.CompactProgress;
+import model.CourseLayout;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+// Recently used course progress in its compact form, so reopening a course doesn't read the
+// progress again. Progress writes on this server update the entry as they are made; every write
+// also moves the key's version on, and a read only fills the entry if no write came in while it
+// was in flight, so it can't put back an older state.
+//
+// Each entry remembers the course layout it was built against and is only used with that same
+// layout, so progress cached before a course's lessons or quizzes changed is never read with the
+// new positions. CourseLayouts also drops a course's entries when it drops the layout.
+//
+// At most kf.progressCache.maxEntries (default 10000) learner/course pairs are kept, least
+// recently used out first.
+public class ProgressCache {
+    private final Map<String, Entry> entries;
+    private long nextVersion = 1;
+    
+    // progress is null once a write couldn't be applied to the compact form
+    private record Entry(CompactProgress progress, CourseLayout layout, long version) {
+        CompactProgress progressFor(CourseLayout current) {
+            return layout == current ? progress : null;
+        }
+    }
+    
+    private ProgressCache() {
+        int maxEntries = ServerConfig.getInt("kf.progressCache.maxEntries", 10000);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+    
+    private static class Holder {
+        private static final ProgressCache INSTANCE = new ProgressCache();
+    }
+    
+    public static ProgressCache getInstance() {
+        return Holder.INSTANCE;
+    }
+    
+    // A copy of the cached progress, or null if it has to be read
+    public synchronized CompactProgress get(String username, String courseId, CourseLayout layout) {
+        Entry entry = entries.get(key(username, courseId));
+        CompactProgress progress = entry != null ? entry.progressFor(layout) : null;
+        return progress != null ? progress.copy() : null;
+    }
+    
+    // Taken before reading the progress and handed to fill() afterwards
+    public synchronized long version(String username, String courseId) {
+        Entry entry = entries.get(key(username, courseId));
+        return entry != null ? entry.version() : 0;
+    }
+    
+    public synchronized void fill(String username, String courseId, long version, CourseLayout layout, CompactProgress progress) {
+        String key = key(username, courseId);
+        Entry entry = entries.get(key);
+        if ((entry != null ? entry.version() : 0) == version) {
+            entries.put(key, new Entry(progress, layout, version));
+        }
+    }
+    
+    // Apply a write to the cached progress, if any, and return a copy of the result. The change
+    // gets its own copy and returns null when the write doesn't fit the compact form, which
+    // drops the entry.
+    public synchronized CompactProgress update(String username, String courseId, CourseLayout layout, UnaryOperator<CompactProgress> change) {
+        String key = key(username, courseId);
+        Entry entry = entries.get(key);
+        CompactProgress current = entry != null ? entry.progressFor(layout) : null;
+        CompactProgress updated = current != null ? change.apply(current.copy()) : null;
+        entries.put(key, new Entry(updated, layout, nextVersion++));
+        return updated != null ? updated.copy() : null;
+    }
+    
+    // Replace the cached progress after a write of the whole record; null drops it
+    public synchronized void replace(String username, String courseId, CourseLayout layout, CompactProgress progress) {
+        entries.put(key(username, courseId), new Entry(progress, layout, nextVersion++));
+    }
+    
+    // Drop every learner's progress for a course whose layout changed or that was removed. Reads
+    // still in flight may fill an entry afterwards, but against the old layout, which is never
+    // handed in again.
+    public synchronized void invalidateCourse(String courseId) {
+        String suffix = "/" + courseId;
+        entries.keySet().removeIf(key -> key.endsWith(suffix));
+    }
+    
+    private static String key(String username, String courseId) {
+        return username + "/" + courseId;
+    }
+}
\ No newline at end of file
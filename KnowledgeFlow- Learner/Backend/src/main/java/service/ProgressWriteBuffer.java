@@ -0,0 +1,266 @@
+package service;
+
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import config.ServerConfig;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+// Write-behind buffer for progress writes under learners/{username}. The frontend posts
+// progress on every lesson click; updates for the same learner and course are merged in memory
+// and written as one multi-path update once the learner has been idle for
+// kf.progress.debounceMs (default 2000), or at the latest kf.progress.maxDelayMs (default
+// 10000) after the first unwritten update, and on shutdown.
+//
+// Updates are merged per path, later values winning. Should an update touch a path nested
+// under (or above) one already pending, it starts a new batch, since a single Firebase update
+// can't contain both; batches are written in order.
+//
+// A batch that fails to write goes back in front of anything buffered since and is retried,
+// with a growing delay capped at kf.progress.maxDelayMs, until it is stored. Reads that must see
+// the learner's latest progress call flush() first, which fails while the batch is unwritten.
+// Setting kf.progress.debounceMs=0 writes every update straight through.
+public class ProgressWriteBuffer {
+    private final DatabaseReference learnerRef;
+    private final Map<Key, Pending> pending = new ConcurrentHashMap<>();
+    // Held while a flush takes a key's batches and issues them, so two flushes can't issue out of order
+    private final Object issueLock = new Object();
+    private final ScheduledExecutorService scheduler;
+    private final long debounceMs;
+    private final long maxDelayMs;
+    
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    
+    private record Key(String username, String courseId) {}
+    
+    // Package-private for tests
+    static class Pending {
+        final List<Map<String, Object>> batches = new ArrayList<>();
+        final long firstUpdateAt;
+        long lastUpdateAt;
+        int attempts;
+        long retryAt;
+        
+        Pending(long now) {
+            this.firstUpdateAt = now;
+            this.lastUpdateAt = now;
+        }
+        
+        void add(Map<String, Object> updates) {
+            Map<String, Object> last = batches.isEmpty() ? null : batches.get(batches.size() - 1);
+            if (last == null || overlaps(last, updates)) {
+                batches.add(new HashMap<>(updates));
+            } else {
+                last.putAll(updates);
+            }
+        }
+        
+        private static boolean overlaps(Map<String, Object> batch, Map<String, Object> updates) {
+            for (String path : updates.keySet()) {
+                for (String existing : batch.keySet()) {
+                    if (!path.equals(existing) && (path.startsWith(existing + "/") || existing.startsWith(path + "/"))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+    
+    private ProgressWriteBuffer() {
+        this.learnerRef = FirebaseDatabase.getInstance().getReference("learners");
+        this.debounceMs = ServerConfig.getInt("kf.progress.debounceMs", 2000);
+        this.maxDelayMs = ServerConfig.getInt("kf.progress.maxDelayMs", 10000);
+        
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "progress-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (debounceMs > 0) {
+            long tickMs = Math.max(50, Math.min(debounceMs / 4, 500));
+            this.scheduler.scheduleWithFixedDelay(this::flushDue, tickMs, tickMs, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    private static class Holder {
+        private static final ProgressWriteBuffer INSTANCE = new ProgressWriteBuffer();
+    }
+    
+    public static ProgressWriteBuffer getInstance() {
+        return Holder.INSTANCE;
+    }
+    
+    // Queue updates (paths relative to learners/{username}) belonging to one course. Completes
+    // once the updates are buffered, or written when buffering is off.
+    public CompletableFuture<Void> write(String username, String courseId, Map<String, Object> updates) {
+        received.incrementAndGet();
+        if (debounceMs <= 0) {
+            written.incrementAndGet();
+            return FirebaseFutures.toCompletable(learnerRef.child(username).updateChildrenAsync(updates))
+                .thenApply(ignored -> null);
+        }
+        
+        long now = System.currentTimeMillis();
+        pending.compute(new Key(username, courseId), (key, entry) -> {
+            Pending merged = entry != null ? entry : new Pending(now);
+            merged.add(updates);
+            merged.lastUpdateAt = now;
+            return merged;
+        });
+        return CompletableFuture.completedFuture(null);
+    }
+    
+    // Write out anything buffered for this learner and course; completes once it is stored, or
+    // exceptionally if it couldn't be
+    public CompletableFuture<Void> flush(String username, String courseId) {
+        return flush(new Key(username, courseId));
+    }
+    
+    // Write out anything buffered for any of the learner's courses
+    public CompletableFuture<Void> flushLearner(String username) {
+        List<CompletableFuture<Void>> flushes = new ArrayList<>();
+        for (Key key : pending.keySet()) {
+            if (key.username().equals(username)) {
+                flushes.add(flush(key));
+            }
+        }
+        return CompletableFuture.allOf(flushes.toArray(new CompletableFuture<?>[0]));
+    }
+    
+    public CompletableFuture<Void> flushAll() {
+        List<CompletableFuture<Void>> flushes = new ArrayList<>();
+        for (Key key : pending.keySet()) {
+            flushes.add(flush(key));
+        }
+        return CompletableFuture.allOf(flushes.toArray(new CompletableFuture<?>[0]));
+    }
+    
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("pending", pending.size());
+        metrics.put("received", received.get());
+        metrics.put("written", written.get());
+        metrics.put("failed", failed.get());
+        return metrics;
+    }
+    
+    private void flushDue() {
+        long now = System.currentTimeMillis();
+        for (Key key : pending.keySet()) {
+            flush(key, buffered -> isDue(buffered, now));
+        }
+    }
+    
+    private boolean isDue(Pending buffered, long now) {
+        if (buffered.attempts > 0) {
+            return now >= buffered.retryAt;
+        }
+        return now - buffered.lastUpdateAt >= debounceMs || now - buffered.firstUpdateAt >= maxDelayMs;
+    }
+    
+    private CompletableFuture<Void> flush(Key key) {
+        return flush(key, buffered -> true);
+    }
+    
+    // Completes exceptionally when any batch failed to write; the failed batches are back in
+    // the buffer by then
+    private CompletableFuture<Void> flush(Key key, Predicate<Pending> due) {
+        List<Map<String, Object>> batches = new ArrayList<>();
+        List<CompletableFuture<Throwable>> writes = new ArrayList<>();
+        Pending[] taken = new Pending[1];
+        
+        // The check and removal run under the map's lock for this key, the one write() updates
+        // the timestamps under; the writes are issued after it is released. issueLock around
+        // both keeps batches in order even when a request and the scheduler flush at once, and
+        // Firebase applies a client's writes in the order they were issued, so nothing needs to
+        // wait here.
+        synchronized (issueLock) {
+            pending.computeIfPresent(key, (k, buffered) -> {
+                if (!due.test(buffered)) {
+                    return buffered;
+                }
+                taken[0] = buffered;
+                return null;
+            });
+            if (taken[0] == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            
+            DatabaseReference userRef = learnerRef.child(key.username());
+            for (Map<String, Object> batch : taken[0].batches) {
+                written.incrementAndGet();
+                batches.add(batch);
+                writes.add(FirebaseFutures.toCompletable(userRef.updateChildrenAsync(batch))
+                    .handle((ignored, error) -> error));
+            }
+        }
+        
+        return CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0])).thenCompose(ignored -> {
+            List<Map<String, Object>> failedBatches = new ArrayList<>();
+            Throwable error = null;
+            for (int i = 0; i < writes.size(); i++) {
+                Throwable batchError = writes.get(i).join();
+                if (batchError != null) {
+                    failedBatches.add(batches.get(i));
+                    error = batchError;
+                }
+            }
+            if (error == null) {
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+            
+            requeue(key, taken[0], failedBatches, error);
+            return CompletableFuture.<Void>failedFuture(FirebaseFutures.unwrap(error));
+        });
+    }
+    
+    // Put failed batches back, in their original order, in front of anything buffered since:
+    // newer updates are merged on top so a retry can't overwrite newer values
+    private void requeue(Key key, Pending buffered, List<Map<String, Object>> failedBatches, Throwable error) {
+        failed.addAndGet(failedBatches.size());
+        int attempts = buffered.attempts + 1;
+        long backoffMs = Math.min(Math.max(debounceMs, 50) << Math.min(attempts - 1, 16), Math.max(maxDelayMs, 50));
+        System.err.println("Progress update for " + key.username() + "/" + key.courseId()
+            + " failed (attempt " + attempts + "), retrying in " + backoffMs + "ms: " + FirebaseFutures.unwrap(error).getMessage());
+        
+        long now = System.currentTimeMillis();
+        pending.compute(key, (k, newer) -> {
+            Pending retried = new Pending(buffered.firstUpdateAt);
+            retried.attempts = attempts;
+            retried.retryAt = now + backoffMs;
+            for (Map<String, Object> batch : failedBatches) {
+                retried.add(batch);
+            }
+            if (newer != null) {
+                for (Map<String, Object> batch : newer.batches) {
+                    retried.add(batch);
+                }
+                retried.lastUpdateAt = newer.lastUpdateAt;
+            }
+            return retried;
+        });
+    }
+    
+    public void shutdown() {
+        scheduler.shutdown();
+        try {
+            flushAll().get(5, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            System.err.println("Failed to flush progress updates on shutdown: " + e.getMessage());
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,80 @@
+package service;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+// learners/{username}/recency/{courseId} holds the epoch millis of the learner's last enrollment
+// or progress write in the course, so the enrolled list can be read in order. Enrollments from
+// before the index existed get an entry from their last accessed (or enrollment) date, parsed
+// this once, by backfillIfNeeded(): one multi-path update for the whole database, marked by
+// meta/recencyIndexed. Until then readers put the enrollments the index lacks after the ones it
+// has (LearnerService.orderEnrollments).
+//
+// An entry written by a progress write between the read and the update can be set back to the
+// older date; the course's next progress write moves it forward again.
+public class RecencyBackfill {
+    private static final String BACKFILL_MARKER = "meta/recencyIndexed";
+    
+    private final DatabaseReference learnerRef;
+    
+    private RecencyBackfill() {
+        this.learnerRef = FirebaseDatabase.getInstance().getReference("learners");
+    }
+    
+    private static class Holder {
+        private static final RecencyBackfill INSTANCE = new RecencyBackfill();
+    }
+    
+    public static RecencyBackfill getInstance() {
+        return Holder.INSTANCE;
+    }
+    
+    // Index every learner's unindexed enrollments, unless an earlier run already did. Needs the
+    // whole learner tree, so it runs once per database rather than per request, from the tree
+    // Main reads once for all startup jobs.
+    public CompletableFuture<Void> backfillIfNeeded(CompletableFuture<DataSnapshot> learners) {
+        DatabaseReference markerRef = learnerRef.getRoot().child(BACKFILL_MARKER);
+        
+        return FirebaseFutures.read(markerRef).thenCompose(marker -> {
+            if (Boolean.TRUE.equals(marker.getValue(Boolean.class))) {
+                return CompletableFuture.completedFuture(null);
+            }
+            
+            return learners.thenApply(tree -> {
+                Map<String, Object> updates = new HashMap<>();
+                for (DataSnapshot learner : tree.getChildren()) {
+                    recencyUpdates(learner).forEach((path, value) ->
+                        updates.put(learnerRef.getKey() + "/" + learner.getKey() + "/" + path, value));
+                }
+                updates.put(BACKFILL_MARKER, true);
+                return updates;
+            }).thenCompose(updates -> FirebaseFutures.toCompletable(learnerRef.getRoot().updateChildrenAsync(updates)))
+                .thenAccept(ignored -> {});
+        });
+    }
+    
+    // Updates, relative to learners/{username}, adding a recency entry for each enrollment that
+    // has none
+    static Map<String, Object> recencyUpdates(DataSnapshot learner) {
+        DataSnapshot recency = learner.child("recency");
+        Map<String, Object> updates = new HashMap<>();
+        for (DataSnapshot enrollment : learner.child("enrollments").getChildren()) {
+            String courseId = EnrollmentMigration.courseId(enrollment);
+            if (courseId == null || recency.hasChild(courseId)) {
+                continue;
+            }
+            
+            String date = learner.child("lastAccessed").child(courseId).getValue(String.class);
+            if (date == null) {
+                date = learner.child("enrollmentDates").child(courseId).getValue(String.class);
+            }
+            updates.put("recency/" + courseId, LearnerService.toMillis(date));
+        }
+        return updates;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,72 @@
+package service;
+
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.FirebaseDatabase;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// revokedSessions/{username} -> epoch seconds: tokens issued to the learner at or before that
+// time are no longer accepted. Whoever deletes a learner (or resets their password) writes the
+// entry, so handlers can trust a session token without reading learners/{username}.
+//
+// The node is small and watched with one listener, so checking a token stays a map lookup. A
+// learner deleted without an entry keeps working until their token expires. Each entry also
+// drops the learner from ExistenceCache.
+public class RevokedSessions {
+    private final Map<String, Long> revokedAt = new ConcurrentHashMap<>();
+    
+    private RevokedSessions() {
+        FirebaseDatabase.getInstance().getReference("revokedSessions").addChildEventListener(new ChildEventListener() {
+            @Override
+            public void onChildAdded(DataSnapshot snapshot, String previousChildName) {
+                revoke(snapshot);
+            }
+            
+            @Override
+            public void onChildChanged(DataSnapshot snapshot, String previousChildName) {
+                revoke(snapshot);
+            }
+            
+            @Override
+            public void onChildRemoved(DataSnapshot snapshot) {
+                revokedAt.remove(snapshot.getKey());
+            }
+            
+            @Override
+            public void onChildMoved(DataSnapshot snapshot, String previousChildName) {
+                // Order doesn't matter here
+            }
+            
+            @Override
+            public void onCancelled(DatabaseError databaseError) {
+                System.err.println("Revoked sessions listener cancelled: " + databaseError.getMessage());
+            }
+        });
+    }
+    
+    private static class Holder {
+        private static final RevokedSessions INSTANCE = new RevokedSessions();
+    }
+    
+    public static RevokedSessions getInstance() {
+        return Holder.INSTANCE;
+    }
+    
+    // Whether a token issued to username at issuedAt (epoch seconds) has been revoked since
+    public boolean isRevoked(String username, long issuedAt) {
+        Long revoked = revokedAt.get(username);
+        return revoked != null && issuedAt <= revoked;
+    }
+    
+    private void revoke(DataSnapshot snapshot) {
+        Long revoked = snapshot.getValue(Long.class);
+        if (revoked != null) {
+            revokedAt.put(snapshot.getKey(), revoked);
+        }
+        // The learner may be gone; let the next existence check read the database
+        ExistenceCache.learners().invalidate(snapshot.getKey());
+    }
+}
\ No newline at end of file
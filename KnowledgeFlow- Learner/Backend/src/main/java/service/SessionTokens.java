@@ -0,0 +1,117 @@
+package service;
+
+import config.ServerConfig;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+// Stateless session tokens handed out at login: base64url(username).expiry.signature, where the
+// signature is HMAC-SHA256 over the first two parts. Verifying one is a hash, not a database
+// read, and any server sharing kf.auth.secret accepts tokens issued by the others.
+//
+// kf.auth.secret is required: the server refuses to start without it, since a key made up at
+// startup would log every learner out on each restart. Tokens live kf.auth.tokenTtlSeconds
+// (default 12 hours).
+public class SessionTokens {
+    // Part of every signature, so a token for the instructor backend is never valid here
+    private static final String AUDIENCE = "learner";
+    
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    
+    private final Mac prototype;
+    private final long ttlSeconds;
+    
+    private SessionTokens() {
+        this(configuredKey(), ServerConfig.getInt("kf.auth.tokenTtlSeconds", 12 * 60 * 60));
+    }
+    
+    // Package-private for tests
+    SessionTokens(byte[] key, long ttlSeconds) {
+        try {
+            this.prototype = Mac.getInstance("HmacSHA256");
+            this.prototype.init(new SecretKeySpec(key, "HmacSHA256"));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is unavailable", e);
+        }
+        this.ttlSeconds = ttlSeconds;
+    }
+    
+    private static byte[] configuredKey() {
+        String secret = ServerConfig.get("kf.auth.secret", null);
+        if (secret == null) {
+            throw new IllegalStateException("kf.auth.secret must be set (-Dkf.auth.secret=... or KF_AUTH_SECRET)");
+        }
+        return secret.getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private static class Holder {
+        private static final SessionTokens INSTANCE = new SessionTokens();
+    }
+    
+    public static SessionTokens getInstance() {
+        return Holder.INSTANCE;
+    }
+    
+    public String issue(String username) {
+        long expiresAt = System.currentTimeMillis() / 1000 + ttlSeconds;
+        String payload = ENCODER.encodeToString(username.getBytes(StandardCharsets.UTF_8)) + "." + expiresAt;
+        return payload + "." + ENCODER.encodeToString(sign(payload));
+    }
+    
+    // Who a valid token was issued to, and when (epoch seconds, derived from the expiry)
+    public record Session(String username, long issuedAt) {}
+    
+    // The username the token was issued to, or null if it is malformed, forged or expired
+    public String verify(String token) {
+        Session session = verifySession(token);
+        return session != null ? session.username() : null;
+    }
+    
+    public Session verifySession(String token) {
+        int signatureStart = token.lastIndexOf('.');
+        int expiryStart = signatureStart > 0 ? token.lastIndexOf('.', signatureStart - 1) : -1;
+        if (expiryStart <= 0) {
+            return null;
+        }
+        
+        String payload = token.substring(0, signatureStart);
+        try {
+            byte[] signature = DECODER.decode(token.substring(signatureStart + 1));
+            if (!MessageDigest.isEqual(signature, sign(payload))) {
+                return null;
+            }
+            
+            long expiresAt = Long.parseLong(token.substring(expiryStart + 1, signatureStart));
+            if (expiresAt < System.currentTimeMillis() / 1000) {
+                return null;
+            }
+            String username = new String(DECODER.decode(token.substring(0, expiryStart)), StandardCharsets.UTF_8);
+            return new Session(username, expiresAt - ttlSeconds);
+        } catch (IllegalArgumentException e) {
+            // Bad base64 or a non-numeric expiry
+            return null;
+        }
+    }
+    
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+    
+    private byte[] sign(String payload) {
+        // Mac instances aren't thread-safe; a clone of the keyed prototype skips key setup
+        Mac mac;
+        try {
+            mac = (Mac) prototype.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+        mac.update(AUDIENCE.getBytes(StandardCharsets.UTF_8));
+        mac.update((byte) 0);
+        return mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+    }
+}
\ No newline at end of file
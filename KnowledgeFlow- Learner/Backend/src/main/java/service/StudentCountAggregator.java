@@ -0,0 +1,198 @@
+package service;
+
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import config.ServerConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+// Absorbs courses/{id}/students increments in memory and flushes the accumulated delta per
+// course with one transaction, so an enrollment wave on a popular course turns into a few
+// writes per second instead of one contended transaction per learner.
+//
+// Flushes happen every kf.students.flushIntervalMs (default 1000) or as soon as a course has
+// kf.students.flushThreshold (default 50) unflushed enrollments, and once more on shutdown.
+// Counts move between three places: pending (recorded here), in flight (sent with the running
+// transaction) and lastFlushed (what the store held after our last commit). Each move happens
+// under the course's lock, and readers take the same lock, so a delta is never counted twice or
+// missed while it moves. Courses with nothing pending or in flight are dropped from the map, and
+// a lastFlushed entry once a reader's stored count has caught up with it.
+//
+// Firebase applies a transaction to its local copy before the server confirms it, so a stored
+// count may already include the in-flight delta. It is taken to once it reaches the value the
+// transaction started from plus the delta; an increment from another server landing meanwhile
+// can make that guess early, which shows the count low (never high) until the commit.
+public class StudentCountAggregator {
+    private final DatabaseReference courseRef;
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastFlushed = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final long flushThreshold;
+    
+    // Guarded by itself; replaced in the map only through compute(), so an increment can't land
+    // on a counter that has just been dropped
+    private static class Counter {
+        long pending;
+        long inFlightDelta;
+        // The value the running transaction last started from; -1 until it has run
+        long inFlightBase = -1;
+        CompletableFuture<Void> inFlight;
+        
+        boolean isIdle() {
+            return pending == 0 && inFlight == null;
+        }
+    }
+    
+    private StudentCountAggregator() {
+        this.courseRef = FirebaseDatabase.getInstance().getReference("courses");
+        this.flushThreshold = ServerConfig.getInt("kf.students.flushThreshold", 50);
+        
+        long flushIntervalMs = ServerConfig.getInt("kf.students.flushIntervalMs", 1000);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "student-count-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::flushAll, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    private static class Holder {
+        private static final StudentCountAggregator INSTANCE = new StudentCountAggregator();
+    }
+    
+    public static StudentCountAggregator getInstance() {
+        return Holder.INSTANCE;
+    }
+    
+    public void increment(String courseId) {
+        Counter counter = counters.compute(courseId, (id, existing) -> {
+            Counter updated = existing != null ? existing : new Counter();
+            synchronized (updated) {
+                updated.pending++;
+            }
+            return updated;
+        });
+        
+        boolean full;
+        synchronized (counter) {
+            full = counter.pending >= flushThreshold;
+        }
+        if (full) {
+            scheduler.execute(() -> flush(courseId));
+        }
+    }
+    
+    // Student count to show readers: the larger of what the caller read from the store and what
+    // our last flush committed (counts only grow), plus enrollments not yet committed
+    public long getStudentCount(String courseId, Long storedCount) {
+        long stored = storedCount != null ? storedCount : 0L;
+        Counter counter = counters.get(courseId);
+        if (counter == null) {
+            return Math.max(stored, flushedCount(courseId, stored));
+        }
+        
+        synchronized (counter) {
+            long base = Math.max(stored, flushedCount(courseId, stored));
+            boolean storedHasInFlight = counter.inFlightBase >= 0 && stored >= counter.inFlightBase + counter.inFlightDelta;
+            return base + counter.pending + (storedHasInFlight ? 0 : counter.inFlightDelta);
+        }
+    }
+    
+    // What our last commit left the store at, forgotten once the caller's stored count shows it
+    private long flushedCount(String courseId, long stored) {
+        Long flushed = lastFlushed.get(courseId);
+        if (flushed == null) {
+            return 0L;
+        }
+        if (stored >= flushed) {
+            lastFlushed.remove(courseId, flushed);
+        }
+        return flushed;
+    }
+    
+    public CompletableFuture<Void> flushAll() {
+        List<CompletableFuture<Void>> flushes = new ArrayList<>();
+        for (String courseId : counters.keySet()) {
+            flushes.add(flush(courseId));
+        }
+        return CompletableFuture.allOf(flushes.toArray(new CompletableFuture<?>[0]));
+    }
+    
+    private CompletableFuture<Void> flush(String courseId) {
+        Counter counter = counters.get(courseId);
+        if (counter == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        // One transaction per course at a time; anything recorded meanwhile goes out on the next flush
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        long delta;
+        synchronized (counter) {
+            if (counter.inFlight != null) {
+                return counter.inFlight;
+            }
+            delta = counter.pending;
+            if (delta != 0) {
+                counter.pending = 0;
+                counter.inFlightDelta = delta;
+                counter.inFlight = done;
+            }
+        }
+        // prune() takes the map's lock before the counter's, so never call it holding the counter
+        if (delta == 0) {
+            prune(courseId);
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        LongConsumer started = current -> {
+            synchronized (counter) {
+                counter.inFlightBase = current;
+            }
+        };
+        FirebaseFutures.increment(courseRef.child(courseId).child("students"), delta, started)
+            .whenComplete((committed, error) -> {
+                synchronized (counter) {
+                    if (error != null) {
+                        // Keep the delta so the next flush retries it
+                        counter.pending += delta;
+                        System.err.println("Failed to flush student count for course " + courseId + ": " + error.getMessage());
+                    } else if (committed != null) {
+                        // Reconcile with the value the store actually holds after our delta
+                        lastFlushed.merge(courseId, committed, Math::max);
+                    }
+                    counter.inFlightDelta = 0;
+                    counter.inFlightBase = -1;
+                    counter.inFlight = null;
+                }
+                prune(courseId);
+                done.complete(null);
+            });
+        return done;
+    }
+    
+    // Drop the course's counter once nothing is pending or in flight
+    private void prune(String courseId) {
+        counters.computeIfPresent(courseId, (id, counter) -> {
+            synchronized (counter) {
+                return counter.isIdle() ? null : counter;
+            }
+        });
+    }
+    
+    public void shutdown() {
+        scheduler.shutdown();
+        try {
+            flushAll().get(5, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            System.err.println("Failed to flush student counts on shutdown: " + e.getMessage());
+        }
+    }
+}
\ No newline at end of file
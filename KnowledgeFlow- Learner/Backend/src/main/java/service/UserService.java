@@ -5,128 +5,188 @@ import model.User;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.CountDownLatch;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class UserService {
+    // Usernames and emails with a signup in progress on this server
+    private static final Set<String> SIGNUPS_IN_FLIGHT = ConcurrentHashMap.newKeySet();
+    
     private final DatabaseReference userRef;
+    private final ExistenceCache existence;
+    private final EmailIndex emailIndex;
+    private final PasswordHasher passwordHasher;
     
     public UserService() {
         this.userRef = FirebaseDatabase.getInstance().getReference("learners");
+        this.existence = ExistenceCache.learners();
+        this.emailIndex = EmailIndex.getInstance();
+        this.passwordHasher = PasswordHasher.getInstance();
     }
     
     public boolean createUser(User user) throws Exception {
-        final boolean[] usernameExists = {false};
-        final boolean[] emailExists = {false};
-        CountDownLatch usernameLatch = new CountDownLatch(1);
+        return FirebaseFutures.await(createUserAsync(user));
+    }
+    
+    public CompletableFuture<Boolean> createUserAsync(User user) {
+        String username = user.getUsername();
         
-        // Check if username already exists
-        userRef.child(user.getUsername()).addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(DataSnapshot dataSnapshot) {
-                usernameExists[0] = dataSnapshot.exists();
-                usernameLatch.countDown();
+        // Cheap pre-checks so the usual conflicts are reported without writing anything
+        CompletableFuture<Boolean> usernameExists = userExistsAsync(username);
+        
+        // Learners from before the email index are only found by querying every email
+        CompletableFuture<Boolean> legacyEmailExists = emailIndex.isBackfilled()
+            ? CompletableFuture.completedFuture(false)
+            : FirebaseFutures.read(userRef.orderByChild("email").equalTo(user.getEmail())).thenApply(DataSnapshot::exists);
+        
+        return usernameExists.thenCombine(legacyEmailExists, (usernameTaken, emailTaken) -> {
+            if (usernameTaken) {
+                return "Username is already taken";
+            }
+            if (emailTaken) {
+                return "Email is already registered";
             }
+            return null;
+        }).thenCompose(conflict -> {
+            if (conflict != null) {
+                return CompletableFuture.<String>failedFuture(new Exception(conflict));
+            }
+            
+            // Hashed on the password pool, only once the usual conflicts are ruled out
+            return passwordHasher.hashAsync(user.getPassword());
+        }).thenCompose(passwordHash -> {
+            // Create user data map
+            Map<String, Object> userData = new HashMap<>();
+            userData.put("email", user.getEmail());
+            userData.put("password", passwordHash);
             
-            @Override
-            public void onCancelled(DatabaseError databaseError) {
-                usernameLatch.countDown();
+            // One signup per username or email at a time on this server, so the check in
+            // register() and the write can't interleave; a second one is answered as a conflict
+            String usernameKey = "username:" + username;
+            String emailKey = "email:" + EmailIndex.key(user.getEmail());
+            if (!SIGNUPS_IN_FLIGHT.add(usernameKey)) {
+                return CompletableFuture.<Boolean>failedFuture(new Exception("Username is already taken"));
+            }
+            if (!SIGNUPS_IN_FLIGHT.add(emailKey)) {
+                SIGNUPS_IN_FLIGHT.remove(usernameKey);
+                return CompletableFuture.<Boolean>failedFuture(new Exception("Email is already registered"));
             }
+            
+            return register(username, user.getEmail(), userData).whenComplete((created, error) -> {
+                SIGNUPS_IN_FLIGHT.remove(usernameKey);
+                SIGNUPS_IN_FLIGHT.remove(emailKey);
+            });
         });
+    }
+    
+    // The learner and their email index entry are created together by one multi-path update, once
+    // both the username and the email are confirmed free, so neither is ever written without
+    // the other and an interrupted signup leaves nothing behind. Two servers can still both
+    // pass the check for one address in the moment before either write lands.
+    private CompletableFuture<Boolean> register(String username, String email, Map<String, Object> userData) {
+        CompletableFuture<Boolean> usernameTaken = FirebaseFutures.read(userRef.child(username)).thenApply(DataSnapshot::exists);
+        CompletableFuture<Boolean> emailTaken = emailIndex.isRegisteredAsync(email);
         
-        CountDownLatch emailLatch = new CountDownLatch(1);
-        // Check if email is already in use
-        userRef.orderByChild("email").equalTo(user.getEmail()).addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(DataSnapshot dataSnapshot) {
-                emailExists[0] = dataSnapshot.exists();
-                emailLatch.countDown();
+        return usernameTaken.thenCombine(emailTaken, (usernameFound, emailFound) -> {
+            if (usernameFound) {
+                return "Username is already taken";
             }
-            
-            @Override
-            public void onCancelled(DatabaseError databaseError) {
-                emailLatch.countDown();
+            if (emailFound) {
+                return "Email is already registered";
+            }
+            return null;
+        }).thenCompose(conflict -> {
+            if (conflict != null) {
+                return CompletableFuture.<Boolean>failedFuture(new Exception(conflict));
             }
+            
+            Map<String, Object> updates = new HashMap<>();
+            updates.put(userRef.getKey() + "/" + username, userData);
+            updates.put(emailIndex.path(email), username);
+            return FirebaseFutures.toCompletable(userRef.getRoot().updateChildrenAsync(updates)).thenApply(ignored -> {
+                existence.put(username, true);
+                return true;
+            });
         });
-        
-        usernameLatch.await();
-        emailLatch.await();
-        
-        if (usernameExists[0]) {
-            throw new Exception("Username is already taken");
-        }
-        
-        if (emailExists[0]) {
-            throw new Exception("Email is already registered");
-        }
-        
-        // Create user data map
-        Map<String, Object> userData = new HashMap<>();
-        userData.put("email", user.getEmail());
-        userData.put("password", user.getPassword()); // Should be hashed in production
-        
-        // Save to database
-        userRef.child(user.getUsername()).setValueAsync(userData).get();
-        return true;
     }
     
     public User login(String username, String password) throws Exception {
-        final User[] authenticatedUser = {null};
-        final CountDownLatch latch = new CountDownLatch(1);
-        
-        userRef.child(username).addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(DataSnapshot dataSnapshot) {
-                if (dataSnapshot.exists()) {
-                    String storedPassword = dataSnapshot.child("password").getValue(String.class);
-                    if (storedPassword != null && storedPassword.equals(password)) {
-                        User user = new User();
-                        user.setUsername(username);
-                        user.setEmail(dataSnapshot.child("email").getValue(String.class));
-                        
-                        // Add enrollments if they exist
-                        if (dataSnapshot.hasChild("enrollments")) {
-                            for (DataSnapshot enrollmentSnapshot : dataSnapshot.child("enrollments").getChildren()) {
-                                String courseId = enrollmentSnapshot.getValue(String.class);
-                                if (courseId != null) {
-                                    user.addEnrollment(courseId);
-                                }
-                            }
-                        }
-                        
-                        authenticatedUser[0] = user;
-                    }
-                }
-                latch.countDown();
+        return FirebaseFutures.await(loginAsync(username, password));
+    }
+    
+    public CompletableFuture<User> loginAsync(String username, String password) {
+        return FirebaseFutures.read(userRef.child(username)).thenCompose(dataSnapshot -> {
+            existence.put(username, dataSnapshot.exists());
+            if (!dataSnapshot.exists()) {
+                return CompletableFuture.<User>completedFuture(null);
             }
             
-            @Override
-            public void onCancelled(DatabaseError databaseError) {
-                latch.countDown();
+            String storedPassword = dataSnapshot.child("password").getValue(String.class);
+            if (storedPassword == null) {
+                return CompletableFuture.<User>completedFuture(null);
             }
+            
+            return passwordHasher.verifyAsync(password, storedPassword).thenApply(verification -> {
+                if (!verification.matches()) {
+                    return null;
+                }
+                
+                // Plaintext from before hashing, or a hash with an outdated work factor
+                if (verification.needsRehash()) {
+                    rehash(username, password);
+                }
+                
+                User user = new User();
+                user.setUsername(username);
+                user.setEmail(dataSnapshot.child("email").getValue(String.class));
+                
+                // Add enrollments if they exist
+                if (dataSnapshot.hasChild("enrollments")) {
+                    for (DataSnapshot enrollmentSnapshot : dataSnapshot.child("enrollments").getChildren()) {
+                        String courseId = EnrollmentMigration.courseId(enrollmentSnapshot);
+                        if (courseId != null) {
+                            user.addEnrollment(courseId);
+                        }
+                    }
+                }
+                
+                return user;
+            });
         });
-        
-        latch.await();
-        return authenticatedUser[0];
+    }
+    
+    // Best effort: a failed or refused rehash leaves the old value, which still verifies
+    private void rehash(String username, String password) {
+        passwordHasher.hashAsync(password)
+            .thenCompose(passwordHash -> FirebaseFutures.toCompletable(
+                userRef.child(username).child("password").setValueAsync(passwordHash)))
+            .exceptionally(e -> {
+                System.err.println("Password rehash for " + username + " skipped: " + FirebaseFutures.unwrap(e).getMessage());
+                return null;
+            });
     }
     
     public boolean userExists(String username) throws Exception {
-        final boolean[] exists = {false};
-        final CountDownLatch latch = new CountDownLatch(1);
+        return FirebaseFutures.await(userExistsAsync(username));
+    }
+    
+    // A learner exists when learners/{username} does, the same test login and
+    // LearnerService.loadLearnerRecordAsync apply before writing to the shared ExistenceCache.
+    // Recent answers come from the cache; otherwise only the learner's email is read, not their
+    // enrollments and progress, and the whole node only when there is no email.
+    public CompletableFuture<Boolean> userExistsAsync(String username) {
+        Boolean known = existence.get(username);
+        if (known != null) {
+            return CompletableFuture.completedFuture(known);
+        }
         
-        userRef.child(username).addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(DataSnapshot dataSnapshot) {
-                exists[0] = dataSnapshot.exists();
-                latch.countDown();
-            }
-            
-            @Override
-            public void onCancelled(DatabaseError databaseError) {
-                latch.countDown();
-            }
+        return FirebaseFutures.read(userRef.child(username).child("email")).thenCompose(email -> email.exists()
+            ? CompletableFuture.completedFuture(true)
+            : FirebaseFutures.read(userRef.child(username)).thenApply(DataSnapshot::exists)
+        ).thenApply(exists -> {
+            existence.put(username, exists);
+            return exists;
         });
-        
-        latch.await();
-        return exists[0];
     }
 }
\ No newline at end of file
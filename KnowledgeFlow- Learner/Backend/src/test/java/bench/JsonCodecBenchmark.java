@@ -0,0 +1,112 @@
+package bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import config.JacksonJsonMapper;
+import model.CourseListing;
+import model.ProgressUpdate;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+// Serializes a browse page and parses a progress update the way the handlers used to (HashMap
+// payloads through a plain ObjectMapper, as Javalin's default mapper does) and the way they do
+// now (records through JacksonJsonMapper's cached writers with Blackbird).
+//
+//   mvn -Pbench test-compile exec:java -Dbench.class=bench.JsonCodecBenchmark
+//
+// Add -Dbench.profiler=gc to compare allocation per operation as well.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonCodecBenchmark {
+    private static final String PROGRESS_JSON = "{\"completedLessons\":[\"l1\",\"l2\",\"l3\"],"
+        + "\"quizAnswers\":{\"q1\":2,\"q2\":0},\"quizSubmitted\":{\"q1\":true,\"q2\":true},"
+        + "\"quizResults\":{\"q1\":true,\"q2\":false},\"certificateUnlocked\":false,\"overallProgress\":60}";
+    
+    @Param({"100"})
+    public int courses;
+    
+    private ObjectMapper plainMapper;
+    private JacksonJsonMapper jsonMapper;
+    private List<Map<String, Object>> mapPayload;
+    private List<CourseListing> recordPayload;
+    
+    @Setup
+    public void setUp() {
+        plainMapper = new ObjectMapper();
+        jsonMapper = new JacksonJsonMapper();
+        mapPayload = new ArrayList<>();
+        recordPayload = new ArrayList<>();
+        
+        for (int i = 0; i < courses; i++) {
+            String id = "-NcOurse" + i;
+            String title = "Course " + i;
+            String description = "A course about topic " + i + " with a description of typical length.";
+            
+            Map<String, Object> course = new HashMap<>();
+            course.put("id", id);
+            course.put("title", title);
+            course.put("description", description);
+            course.put("creatorUsername", "instructor" + (i % 10));
+            course.put("thumbnailUrl", "https://example.com/thumbnails/" + i + ".png");
+            course.put("category", "programming");
+            course.put("students", (long) i * 3);
+            mapPayload.add(course);
+            
+            recordPayload.add(new CourseListing(id, title, description, "instructor" + (i % 10),
+                "https://example.com/thumbnails/" + i + ".png", "programming", (long) i * 3));
+        }
+    }
+    
+    @Benchmark
+    public String writeHashMaps() throws Exception {
+        return plainMapper.writeValueAsString(mapPayload);
+    }
+    
+    @Benchmark
+    public String writeRecords() {
+        return jsonMapper.toJsonString(recordPayload, recordPayload.getClass());
+    }
+    
+    @Benchmark
+    public Map<?, ?> readHashMap() throws Exception {
+        return plainMapper.readValue(PROGRESS_JSON, Map.class);
+    }
+    
+    @Benchmark
+    public ProgressUpdate readRecord() {
+        return jsonMapper.fromJsonString(PROGRESS_JSON, ProgressUpdate.class);
+    }
+    
+    public static void main(String[] args) throws Exception {
+        OptionsBuilder options = new OptionsBuilder();
+        options.include(JsonCodecBenchmark.class.getSimpleName());
+        
+        // exec:java loads the test classpath into a class loader rather than java.class.path,
+        // which is what JMH gives the forked benchmark JVM
+        if (Thread.currentThread().getContextClassLoader() instanceof URLClassLoader loader) {
+            StringJoiner classpath = new StringJoiner(File.pathSeparator);
+            for (URL url : loader.getURLs()) {
+                classpath.add(new File(url.toURI()).getPath());
+            }
+            System.setProperty("java.class.path", classpath.toString());
+        }
+        if (System.getProperty("bench.profiler") != null) {
+            options.addProfiler(System.getProperty("bench.profiler"));
+        }
+        new Runner(options.build()).run();
+    }
+}
\ No newline at end of file
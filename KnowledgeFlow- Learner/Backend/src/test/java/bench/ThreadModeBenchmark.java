@@ -0,0 +1,110 @@
+package bench;
+
+import config.ServerConfig;
+import config.ServerConfig.ThreadMode;
+import io.javalin.Javalin;
+import org.eclipse.jetty.server.Server;
+import service.FirebaseFutures;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Compares request throughput of the platform and virtual thread modes for a handler shaped like
+// the blocking service adapters: several sequential Firebase round trips, each awaited on the
+// request thread. The round trips are simulated with futures completed after a fixed delay, so
+// no database is needed.
+//
+//   mvn -Pbench test-compile exec:java
+//   mvn -Pbench test-compile exec:java -Dbench.clients=1000 -Dbench.roundTrips=5 -Dbench.latencyMs=20
+public class ThreadModeBenchmark {
+    private static final int CLIENTS = Integer.getInteger("bench.clients", 500);
+    private static final int ROUND_TRIPS = Integer.getInteger("bench.roundTrips", 4);
+    private static final int LATENCY_MS = Integer.getInteger("bench.latencyMs", 20);
+    private static final int SECONDS = Integer.getInteger("bench.seconds", 10);
+    private static final int MAX_THREADS = Integer.getInteger("bench.maxThreads", 250);
+    
+    private static final ScheduledExecutorService network = Executors.newScheduledThreadPool(2);
+    
+    public static void main(String[] args) throws Exception {
+        System.out.printf("clients=%d roundTrips=%d latency=%dms maxThreads=%d duration=%ds%n",
+            CLIENTS, ROUND_TRIPS, LATENCY_MS, MAX_THREADS, SECONDS);
+        
+        for (ThreadMode mode : ThreadMode.values()) {
+            run(mode);
+        }
+        
+        network.shutdownNow();
+        System.exit(0);
+    }
+    
+    private static void run(ThreadMode mode) throws Exception {
+        Javalin app = Javalin.create(config -> {
+            config.showJavalinBanner = false;
+            config.jetty.server(() -> new Server(ServerConfig.createThreadPool(mode, MAX_THREADS)));
+        });
+        app.get("/work", ctx -> {
+            for (int i = 0; i < ROUND_TRIPS; i++) {
+                FirebaseFutures.await(simulatedRoundTrip());
+            }
+            ctx.result(Thread.currentThread().isVirtual() ? "virtual" : "platform");
+        });
+        app.start(0);
+        
+        HttpClient client = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+        URI uri = URI.create("http://localhost:" + app.port() + "/work");
+        HttpRequest request = HttpRequest.newBuilder(uri).build();
+        
+        // Warm up the server and report which kind of thread served the request
+        String servedBy = client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+        
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong completed = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        
+        ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+        for (int i = 0; i < CLIENTS; i++) {
+            clients.submit(() -> {
+                while (running.get()) {
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() == 200) {
+                            completed.incrementAndGet();
+                        } else {
+                            failed.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                    }
+                }
+            });
+        }
+        
+        long start = System.nanoTime();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(SECONDS));
+        running.set(false);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        clients.shutdown();
+        clients.awaitTermination(30, TimeUnit.SECONDS);
+        app.stop();
+        
+        System.out.printf("%-8s served by %-8s %8.0f req/s  (%d ok, %d failed)%n",
+            mode.name().toLowerCase(), servedBy, completed.get() / elapsed, completed.get(), failed.get());
+    }
+    
+    private static CompletableFuture<Void> simulatedRoundTrip() {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        network.schedule(() -> future.complete(null), LATENCY_MS, TimeUnit.MILLISECONDS);
+        return future;
+    }
+}
\ No newline at end of file
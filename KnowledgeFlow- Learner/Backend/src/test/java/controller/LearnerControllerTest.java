@@ -0,0 +1,116 @@
+package controller;
+
+import config.JacksonJsonMapper;
+import io.javalin.Javalin;
+import io.javalin.testtools.JavalinTest;
+import model.CourseProgress;
+import model.ProgressPatch;
+import model.ProgressStatus;
+import okhttp3.Response;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LearnerControllerTest {
+    private static final String PROGRESS = "/api/users/alice/courses/c1/progress";
+    
+    private final StubStore store = new StubStore();
+    
+    private static class StubStore implements ProgressStore {
+        boolean userExists = true;
+        boolean courseExists = true;
+        boolean enrolled = true;
+        final List<ProgressPatch> patches = new ArrayList<>();
+        
+        @Override
+        public CompletableFuture<Boolean> userExistsAsync(String username) {
+            return CompletableFuture.completedFuture(userExists);
+        }
+        
+        @Override
+        public CompletableFuture<Boolean> courseExistsAsync(String courseId) {
+            return CompletableFuture.completedFuture(courseExists);
+        }
+        
+        @Override
+        public CompletableFuture<Boolean> isEnrolledAsync(String username, String courseId) {
+            return CompletableFuture.completedFuture(enrolled);
+        }
+        
+        @Override
+        public CompletableFuture<ProgressStatus> updateCourseProgressAsync(CourseProgress progress) {
+            return CompletableFuture.failedFuture(new UnsupportedOperationException());
+        }
+        
+        @Override
+        public CompletableFuture<ProgressStatus> patchCourseProgressAsync(String username, String courseId, ProgressPatch patch) {
+            patches.add(patch);
+            return CompletableFuture.completedFuture(new ProgressStatus(50, false, "2024-01-01T00:00:00Z"));
+        }
+    }
+    
+    private Javalin app() {
+        LearnerController controller = new LearnerController(store);
+        Javalin app = Javalin.create(config -> config.jsonMapper(new JacksonJsonMapper()));
+        app.patch("/api/users/{username}/courses/{courseId}/progress", controller::patchCourseProgress);
+        return app;
+    }
+    
+    @Test
+    void patchWritesOnlyWhatChanged() {
+        JavalinTest.test(app(), (server, client) -> {
+            Response response = client.patch(PROGRESS, "{\"completedLessons\": [\"l1\"], \"quizAnswers\": {\"q1\": 2}}");
+            
+            assertEquals(200, response.code());
+            assertTrue(response.body().string().contains("\"overallProgress\":50"));
+            assertEquals(1, store.patches.size());
+            ProgressPatch patch = store.patches.get(0);
+            assertEquals(List.of("l1"), patch.completedLessons());
+            assertEquals(Map.of("q1", 2), patch.quizAnswers());
+            assertNull(patch.quizSubmitted());
+        });
+    }
+    
+    @Test
+    void rejectsAnEmptyPatch() {
+        JavalinTest.test(app(), (server, client) -> {
+            assertEquals(400, client.patch(PROGRESS, "{}").code());
+            assertTrue(store.patches.isEmpty());
+        });
+    }
+    
+    @Test
+    void rejectsIdsThatCannotBeKeys() {
+        JavalinTest.test(app(), (server, client) -> {
+            assertEquals(400, client.patch(PROGRESS, "{\"quizResults\": {\"q.1\": true}}").code());
+            assertTrue(store.patches.isEmpty());
+        });
+    }
+    
+    @Test
+    void rejectsCoursesTheLearnerIsNotEnrolledIn() {
+        store.enrolled = false;
+        JavalinTest.test(app(), (server, client) -> {
+            assertEquals(403, client.patch(PROGRESS, "{\"completedLessons\": [\"l1\"]}").code());
+            assertTrue(store.patches.isEmpty());
+        });
+    }
+    
+    @Test
+    void answersNotFoundForUnknownLearnersAndCourses() {
+        store.userExists = false;
+        JavalinTest.test(app(), (server, client) ->
+            assertEquals(404, client.patch(PROGRESS, "{\"completedLessons\": [\"l1\"]}").code()));
+        
+        store.userExists = true;
+        store.courseExists = false;
+        JavalinTest.test(app(), (server, client) ->
+            assertEquals(404, client.patch(PROGRESS, "{\"completedLessons\": [\"l1\"]}").code()));
+        assertTrue(store.patches.isEmpty());
+    }
+}
\ No newline at end of file
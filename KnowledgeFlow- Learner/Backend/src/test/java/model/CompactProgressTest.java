@@ -0,0 +1,104 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactProgressTest {
+    private final CourseLayout layout = new CourseLayout(List.of("l1", "l2", "l3"), List.of("q2", "q1"));
+    
+    @Test
+    void roundTripsProgressThatFits() {
+        CourseProgress progress = progress(List.of("l3", "l1"),
+            Map.of("q1", 0, "q2", 30), Map.of("q1", true), Map.of("q1", false, "q2", true));
+        progress.setCertificateUnlocked(true);
+        progress.setLastUpdated("2024-01-01T00:00:00Z");
+        
+        CompactProgress compact = CompactProgress.from(progress, layout);
+        assertNotNull(compact);
+        
+        CourseProgress decoded = compact.toCourseProgress("c1", "alice", layout);
+        assertEquals(List.of("l1", "l3"), decoded.getCompletedLessons());
+        assertEquals(Map.of("q1", 0, "q2", 30), decoded.getQuizAnswers());
+        assertEquals(Map.of("q1", true), decoded.getQuizSubmitted());
+        assertEquals(Map.of("q1", false, "q2", true), decoded.getQuizResults());
+        assertTrue(decoded.isCertificateUnlocked());
+        assertEquals("2024-01-01T00:00:00Z", decoded.getLastUpdated());
+        // 2 of 3 lessons and 1 of 2 quizzes
+        assertEquals(60, decoded.getOverallProgress());
+    }
+    
+    @Test
+    void rejectsProgressThatDoesNotFit() {
+        assertNull(CompactProgress.from(progress(List.of("unknown"), Map.of(), Map.of(), Map.of()), layout));
+        assertNull(CompactProgress.from(progress(List.of(), Map.of("q1", 31), Map.of(), Map.of()), layout));
+        assertNull(CompactProgress.from(progress(List.of(), Map.of("q1", 1.5), Map.of(), Map.of()), layout));
+        assertNull(CompactProgress.from(progress(List.of(), Map.of(), Map.of("q1", "yes"), Map.of()), layout));
+    }
+    
+    @Test
+    void fromKnownSkipsWhatDoesNotFit() {
+        CompactProgress compact = CompactProgress.fromKnown(
+            progress(List.of("l2", "unknown"), Map.of(), Map.of("q2", true, "q9", true), Map.of()), layout);
+        
+        assertEquals(1, compact.getCompletedLessonCount());
+        assertEquals(1, compact.getSubmittedQuizCount());
+    }
+    
+    @Test
+    void keepsSubmittedCountAcrossChanges() {
+        CompactProgress compact = CompactProgress.empty(layout);
+        assertTrue(compact.setQuizSubmitted(layout, "q1", true));
+        assertTrue(compact.setQuizSubmitted(layout, "q1", true));
+        assertEquals(1, compact.getSubmittedQuizCount());
+        
+        CompactProgress copy = compact.copy();
+        assertTrue(compact.setQuizSubmitted(layout, "q1", null));
+        assertEquals(0, compact.getSubmittedQuizCount());
+        assertEquals(1, copy.getSubmittedQuizCount());
+    }
+    
+    @Test
+    void clearingAnAnswerKeepsTheOtherFlags() {
+        CompactProgress compact = CompactProgress.empty(layout);
+        compact.setQuizAnswer(layout, "q2", 4);
+        compact.setQuizSubmitted(layout, "q2", true);
+        compact.setQuizResult(layout, "q2", true);
+        compact.setQuizAnswer(layout, "q2", null);
+        
+        CourseProgress decoded = compact.toCourseProgress("c1", "alice", layout);
+        assertTrue(decoded.getQuizAnswers().isEmpty());
+        assertEquals(Map.of("q2", true), decoded.getQuizSubmitted());
+        assertEquals(Map.of("q2", true), decoded.getQuizResults());
+    }
+    
+    @Test
+    void completesOnlyWithEveryLessonAndQuiz() {
+        CompactProgress compact = CompactProgress.empty(layout);
+        for (String lessonId : List.of("l1", "l2", "l3")) {
+            compact.setLessonCompleted(layout, lessonId, true);
+        }
+        compact.setQuizSubmitted(layout, "q1", true);
+        compact.unlockCertificateIfComplete();
+        assertFalse(compact.isCertificateUnlocked());
+        
+        compact.setQuizSubmitted(layout, "q2", true);
+        compact.unlockCertificateIfComplete();
+        assertTrue(compact.isCertificateUnlocked());
+        assertEquals(100, compact.getOverallProgress());
+    }
+    
+    private static CourseProgress progress(List<String> lessons, Map<String, Object> answers,
+                                           Map<String, Object> submitted, Map<String, Object> results) {
+        CourseProgress progress = new CourseProgress("c1", "alice");
+        progress.setCompletedLessons(lessons);
+        progress.setQuizAnswers(new HashMap<>(answers));
+        progress.setQuizSubmitted(new HashMap<>(submitted));
+        progress.setQuizResults(new HashMap<>(results));
+        return progress;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,79 @@
+package service;
+
+import model.CourseSummary;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CourseSearchIndexTest {
+    private final CourseSearchIndex index = new CourseSearchIndex();
+    
+    @Test
+    void findsTokensInsideTerms() {
+        index.update(course("1", "JavaScript Basics", "Learn the web", "ann"));
+        index.update(course("2", "TypeScript", "Typed javascript", "bob"));
+        index.update(course("3", "Cooking", "Pasta", "cat"));
+        
+        assertEquals(List.of("1", "2"), sorted(index.search("script")));
+        assertEquals(List.of("1", "2"), sorted(index.search("JAVA")));
+        assertEquals(List.of(), index.search("pizza"));
+    }
+    
+    @Test
+    void keepsPunctuationAndWordOrder() {
+        index.update(course("1", "C++ for beginners", "", "ann"));
+        index.update(course("2", "C basics", "", "bob"));
+        
+        assertEquals(List.of("1"), index.search("c++"));
+        assertEquals(List.of("1"), index.search("++"));
+        assertEquals(List.of("1"), index.search("for beg"));
+        assertEquals(List.of(), index.search("beginners for"));
+    }
+    
+    @Test
+    void ranksTitleHitsAboveDescriptionHits() {
+        index.update(course("a", "Cooking", "Some python on the side", "ann"));
+        index.update(course("b", "Python", "Programming", "bob"));
+        
+        assertEquals(List.of("b", "a"), index.search("python"));
+    }
+    
+    @Test
+    void agreesWithMatches() {
+        CourseSummary course = course("1", "Data Science", "Pandas and numpy", "Grace");
+        index.update(course);
+        
+        for (String query : List.of("science", "a sc", "NUMPY", "grace", "pandas numpy", "  ")) {
+            assertEquals(CourseSearchIndex.matches(course, query), index.search(query).contains("1"), query);
+        }
+    }
+    
+    @Test
+    void forgetsRemovedAndReplacedText() {
+        index.update(course("1", "Rust", "", "ann"));
+        index.update(course("2", "Rust in depth", "", "bob"));
+        index.remove("1");
+        index.update(course("2", "Go", "", "bob"));
+        
+        assertEquals(List.of(), index.search("rust"));
+        assertEquals(List.of("2"), index.search("go"));
+    }
+    
+    // Callers treat an empty search as no search, so the index never sees one from them
+    @Test
+    void ignoresEmptyQueries() {
+        index.update(course("1", "Rust", "", "ann"));
+        
+        assertEquals(List.of(), index.search(""));
+    }
+    
+    private static List<String> sorted(List<String> ids) {
+        return ids.stream().sorted().toList();
+    }
+    
+    private static CourseSummary course(String id, String title, String description, String creator) {
+        return new CourseSummary(id, title, description, "General", null, creator, 0L, null, 0L, 0, 0);
+    }
+}
\ No newline at end of file
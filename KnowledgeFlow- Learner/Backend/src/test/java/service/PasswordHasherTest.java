@@ -0,0 +1,27 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHasherTest {
+    private final PasswordHasher hasher = PasswordHasher.getInstance();
+    
+    @Test
+    void treatsMalformedHashesAsWrongPasswords() {
+        for (String stored : List.of("pbkdf2$", "pbkdf2$abc$c2FsdA$aGFzaA", "pbkdf2$1000$!!$aGFzaA",
+                "pbkdf2$0$c2FsdA$aGFzaA", "pbkdf2$1000$$aGFzaA", "pbkdf2$1000$c2FsdA$aGFzaA$extra")) {
+            PasswordHasher.Verification verification = hasher.verifyAsync("secret", stored).join();
+            assertFalse(verification.matches(), stored);
+            assertFalse(verification.needsRehash(), stored);
+        }
+    }
+    
+    @Test
+    void acceptsLegacyPlaintextAndAsksForARehash() {
+        assertEquals(new PasswordHasher.Verification(true, true), hasher.verifyAsync("secret", "secret").join());
+        assertEquals(new PasswordHasher.Verification(false, false), hasher.verifyAsync("secret", "other").join());
+    }
+}
\ No newline at end of file
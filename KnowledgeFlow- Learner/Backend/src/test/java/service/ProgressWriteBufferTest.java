@@ -0,0 +1,57 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProgressWriteBufferTest {
+    private static final String PROGRESS = "courseProgress/c1/";
+    
+    @Test
+    void mergesDisjointPathsLaterValuesWinning() {
+        ProgressWriteBuffer.Pending pending = new ProgressWriteBuffer.Pending(0);
+        pending.add(Map.of(PROGRESS + "completedLessons/l1", true, PROGRESS + "lastUpdated", "t1"));
+        pending.add(Map.of(PROGRESS + "completedLessons/l2", true, PROGRESS + "lastUpdated", "t2"));
+        
+        assertEquals(List.of(Map.of(
+            PROGRESS + "completedLessons/l1", true,
+            PROGRESS + "completedLessons/l2", true,
+            PROGRESS + "lastUpdated", "t2")), pending.batches);
+    }
+    
+    @Test
+    void startsANewBatchForNestedPaths() {
+        ProgressWriteBuffer.Pending pending = new ProgressWriteBuffer.Pending(0);
+        pending.add(Map.of(PROGRESS + "quizAnswers", Map.of("q1", 1)));
+        pending.add(Map.of(PROGRESS + "quizAnswers/q1", 2));
+        pending.add(Map.of(PROGRESS + "quizSubmitted/q1", true));
+        pending.add(Map.of(PROGRESS + "quizAnswers", Map.of()));
+        
+        assertEquals(List.of(
+            Map.of(PROGRESS + "quizAnswers", Map.of("q1", 1)),
+            Map.of(PROGRESS + "quizAnswers/q1", 2, PROGRESS + "quizSubmitted/q1", true),
+            Map.of(PROGRESS + "quizAnswers", Map.of())), pending.batches);
+    }
+    
+    @Test
+    void doesNotTreatSharedPrefixesAsNesting() {
+        ProgressWriteBuffer.Pending pending = new ProgressWriteBuffer.Pending(0);
+        pending.add(Map.of("courseProgress/c1", Map.of()));
+        pending.add(Map.of("courseProgress/c10", Map.of()));
+        
+        assertEquals(1, pending.batches.size());
+    }
+    
+    @Test
+    void copiesTheCallersUpdates() {
+        Map<String, Object> updates = new java.util.HashMap<>(Map.of(PROGRESS + "lastUpdated", "t1"));
+        ProgressWriteBuffer.Pending pending = new ProgressWriteBuffer.Pending(0);
+        pending.add(updates);
+        updates.put(PROGRESS + "lastUpdated", "t2");
+        
+        assertEquals("t1", pending.batches.get(0).get(PROGRESS + "lastUpdated"));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,54 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionTokensTest {
+    private static final byte[] KEY = "test-secret".getBytes(StandardCharsets.UTF_8);
+    
+    private final SessionTokens tokens = new SessionTokens(KEY, 60);
+    
+    @Test
+    void verifiesIssuedTokens() {
+        assertEquals("alice", tokens.verify(tokens.issue("alice")));
+        assertEquals("ünï.côde", tokens.verify(tokens.issue("ünï.côde")));
+    }
+    
+    @Test
+    void acceptsTokensFromServersSharingTheKey() {
+        assertEquals("alice", new SessionTokens(KEY, 60).verify(tokens.issue("alice")));
+        assertNull(new SessionTokens("other".getBytes(StandardCharsets.UTF_8), 60).verify(tokens.issue("alice")));
+    }
+    
+    @Test
+    void rejectsTamperedTokens() {
+        String token = tokens.issue("alice");
+        String[] parts = token.split("\\.");
+        String bob = java.util.Base64.getUrlEncoder().withoutPadding().encodeToString("bob".getBytes(StandardCharsets.UTF_8));
+        
+        assertNull(tokens.verify(bob + "." + parts[1] + "." + parts[2]));
+        assertNull(tokens.verify(parts[0] + "." + (Long.parseLong(parts[1]) + 3600) + "." + parts[2]));
+        assertNull(tokens.verify(parts[0] + "." + parts[1] + "." + parts[2].substring(1)));
+        assertNull(tokens.verify(token + "x"));
+    }
+    
+    @Test
+    void rejectsMalformedTokens() {
+        assertNull(tokens.verify(""));
+        assertNull(tokens.verify("abc"));
+        assertNull(tokens.verify(".1."));
+        assertNull(tokens.verify("YWxpY2U.soon.c2ln"));
+        assertNull(tokens.verify("YWxpY2U.1.!!!"));
+    }
+    
+    @Test
+    void rejectsExpiredTokens() {
+        SessionTokens expired = new SessionTokens(KEY, -1);
+        
+        assertNull(expired.verify(expired.issue("alice")));
+        assertNull(tokens.verify(expired.issue("alice")));
+    }
+}
\ No newline at end of file
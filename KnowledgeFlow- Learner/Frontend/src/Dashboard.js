@@ -2,6 +2,7 @@ import React, { useState, useEffect } from 'react';
 import { motion } from 'framer-motion';
 import { Book, LogOut, User, Bell, Search, Filter, Heart, AlertCircle } from 'lucide-react';
 import { useNavigate } from 'react-router-dom';
+import { authFetch, clearSession } from './session';
 
 export default function DashboardPage() {
   const navigate = useNavigate();
@@ -44,7 +45,7 @@ export default function DashboardPage() {
     } catch (error) {
       console.error("Error parsing user data:", error);
       // Handle invalid data by redirecting to login
-      localStorage.removeItem('user');
+      clearSession();
       navigate('/login');
     }
   }, [navigate]);
@@ -54,7 +55,7 @@ export default function DashboardPage() {
     setIsLoading(true);
     setFetchError(null);
     try {
-      const response = await fetch(`http://localhost:7000/api/users/${username}/enrolled-courses`);
+      const response = await authFetch(`http://localhost:7000/api/users/${username}/enrolled-courses`);
       
       if (!response.ok) {
         throw new Error(`Failed to fetch enrolled courses (${response.status})`);
@@ -106,7 +107,7 @@ export default function DashboardPage() {
     if (!user) return;
     
     try {
-      const response = await fetch(`http://localhost:7000/api/courses/${courseId}/enroll`, {
+      const response = await authFetch(`http://localhost:7000/api/courses/${courseId}/enroll`, {
         method: 'POST',
         headers: {
           'Content-Type': 'application/json',
@@ -137,7 +138,7 @@ export default function DashboardPage() {
   };
 
   const handleLogout = () => {
-    localStorage.removeItem('user');
+    clearSession();
     navigate('/login');
   };
 
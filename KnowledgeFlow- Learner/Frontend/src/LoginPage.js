@@ -1,6 +1,7 @@
 import React, { useState } from 'react';
 import { motion } from 'framer-motion';
 import { Lock, User, AlertCircle } from 'lucide-react';
+import { saveSession } from './session';
 
 export default function LoginPage() {
   const [credentials, setCredentials] = useState({
@@ -66,8 +67,8 @@ export default function LoginPage() {
         throw new Error('Invalid response from server');
       }
       
-      // Save user data in localStorage or context
-      localStorage.setItem('user', JSON.stringify(data.user));
+      // Save user data and session token in localStorage
+      saveSession(data);
       
       console.log('Login successful', data.user);
       // Redirect to dashboard or home page
@@ -2,6 +2,7 @@ import React, { useState, useEffect } from 'react';
 import { useParams, useNavigate } from 'react-router-dom';
 import { motion } from 'framer-motion';
 import { ArrowLeft, Play, CheckCircle, HelpCircle, Award, AlertCircle, ExternalLink, Lock, Check, X, ArrowRight } from 'lucide-react';
+import { authFetch } from './session';
 
 export default function ViewCoursePage() {
   const { id } = useParams();
@@ -27,7 +28,8 @@ export default function ViewCoursePage() {
     const fetchCourse = async () => {
       setIsLoading(true);
       try {
-        const response = await fetch(`http://localhost:7000/courses/${id}`, {
+        // Only the table of contents; lesson bodies and quiz questions are fetched as they are opened
+        const response = await fetch(`http://localhost:7000/courses/${id}/outline`, {
           headers: { 'Content-Type': 'application/json' }
         });
 
@@ -35,13 +37,19 @@ export default function ViewCoursePage() {
           throw new Error(`Failed to fetch course: ${response.status} ${response.statusText}`);
         }
 
-        const data = await response.json();
+        const outline = await response.json();
+        const data = {
+          ...outline,
+          lessons: outline.lessons || [],
+          quizzes: (outline.quizIds || []).map(quizId => ({ id: quizId }))
+        };
         setCourse(data);
         
         // Set the first lesson as active if available
-        if (data.lessons && data.lessons.length > 0) {
+        if (data.lessons.length > 0) {
           setActiveLesson(data.lessons[0]);
           processVideoUrl(data.lessons[0].videoUrl);
+          loadLesson(data.lessons[0]);
         }
         
         // Load saved progress from localStorage
@@ -59,6 +67,54 @@ export default function ViewCoursePage() {
     }
   }, [id]);
 
+  // Fetch a lesson's body the first time it is opened and merge it into the course
+  const loadLesson = async (lesson) => {
+    if (lesson.loaded) return;
+    try {
+      const response = await fetch(`http://localhost:7000/courses/${id}/lessons/${lesson.id}`);
+      if (!response.ok) return;
+      
+      const details = { ...(await response.json()), loaded: true };
+      setCourse(prev => ({
+        ...prev,
+        lessons: prev.lessons.map(item => item.id === lesson.id ? { ...item, ...details } : item)
+      }));
+      setActiveLesson(prev => prev && prev.id === lesson.id ? { ...prev, ...details } : prev);
+    } catch (err) {
+      console.error('Error fetching lesson:', err);
+    }
+  };
+  
+  // Fetch a quiz's question, options and answer the first time it is needed; resolves to the
+  // full quiz, or the entry as it was if the fetch fails
+  const loadQuiz = async (quiz) => {
+    if (quiz.loaded) return quiz;
+    try {
+      const response = await fetch(`http://localhost:7000/courses/${id}/quizzes/${quiz.id}`);
+      if (!response.ok) return quiz;
+      
+      const details = { ...(await response.json()), loaded: true };
+      setCourse(prev => ({
+        ...prev,
+        quizzes: prev.quizzes.map(item => item.id === quiz.id ? { ...item, ...details } : item)
+      }));
+      return { ...quiz, ...details };
+    } catch (err) {
+      console.error('Error fetching quiz:', err);
+      return quiz;
+    }
+  };
+  
+  // The given quizzes with their details, fetching the ones not loaded yet
+  const withQuizDetails = (quizzes) => Promise.all(quizzes.map(loadQuiz));
+  
+  // The quiz on screen is fetched when the quizzes tab shows it
+  useEffect(() => {
+    if (activeTab === 'quizzes' && course && course.quizzes[activeQuizIndex]) {
+      loadQuiz(course.quizzes[activeQuizIndex]);
+    }
+  }, [activeTab, activeQuizIndex, course?.quizzes?.[activeQuizIndex]?.loaded]);
+
   // Helper to check if all lessons can be marked complete
   const hasUncompletedLessons = () => {
     if (!course || !course.lessons || course.lessons.length === 0) return false;
@@ -89,6 +145,7 @@ export default function ViewCoursePage() {
       // Combine existing completed lessons with new ones
       const updatedCompletedLessons = [...completedLessons, ...newCompletedLessons];
       setCompletedLessons(updatedCompletedLessons);
+      patchProgressOnServer({ completedLessons: newCompletedLessons });
       
       // Check if all quizzes are completed
       const allQuizzesCompleted = course.quizzes && course.quizzes.length > 0 ? 
@@ -102,14 +159,19 @@ export default function ViewCoursePage() {
   };
 
   // Update the submitAllQuizAnswers function to handle different option counts
-const submitAllQuizAnswers = () => {
+const submitAllQuizAnswers = async () => {
   if (!course || !course.quizzes || course.quizzes.length === 0) return;
   
   const newSubmitted = { ...quizSubmitted };
   const newResults = { ...quizResults };
   
+  // Answers restored from saved progress may belong to quizzes not opened yet
+  const answered = await withQuizDetails(course.quizzes.filter(quiz => 
+    !quizSubmitted[quiz.id] && quizAnswers[quiz.id] !== undefined
+  ));
+  
   // Process each quiz that has an answer selected but not yet submitted
-  course.quizzes.forEach(quiz => {
+  answered.forEach(quiz => {
     // Skip quizzes that are already submitted
     if (newSubmitted[quiz.id] || quizSubmitted[quiz.id]) return;
     
@@ -128,6 +190,7 @@ const submitAllQuizAnswers = () => {
     // Update state
     setQuizSubmitted({...quizSubmitted, ...newSubmitted});
     setQuizResults({...quizResults, ...newResults});
+    patchProgressOnServer(quizSubmission(answered));
     
     // Check if all lessons are completed
     const allLessonsCompleted = completedLessons.length === course.lessons.length;
@@ -168,7 +231,7 @@ const submitAllQuizAnswers = () => {
       } else {
         // If not in localStorage, try to fetch from server
         try {
-          const response = await fetch(`http://localhost:7000/api/users/${user.username}/courses/${id}/progress`);
+          const response = await authFetch(`http://localhost:7000/api/users/${user.username}/courses/${id}/progress`);
           
           if (response.ok) {
             const serverProgress = await response.json();
@@ -199,7 +262,7 @@ const submitAllQuizAnswers = () => {
     }
   };
   
-  // Modify the saveProgress function to also update server
+  // Keep a local copy of the progress; the server is sent each change as it happens (patchProgressOnServer)
   const saveProgress = () => {
     try {
       // Get current user
@@ -220,31 +283,26 @@ const submitAllQuizAnswers = () => {
       
       // Save to localStorage
       localStorage.setItem(progressKey, JSON.stringify(progressData));
-      
-      // Also update API
-      updateProgressOnServer(progressData);
     } catch (error) {
       console.error("Error saving progress:", error);
     }
   };
 
-  // Add this function to sync progress with the server
-  const updateProgressOnServer = async (progressData) => {
+  // Send only what just changed, e.g. { completedLessons: ['lesson1'] }; the server works out
+  // overallProgress and certificateUnlocked itself
+  const patchProgressOnServer = async (patch) => {
     try {
       const userData = localStorage.getItem('user');
       if (!userData) return;
       
       const user = JSON.parse(userData);
       
-      const response = await fetch(`http://localhost:7000/api/users/${user.username}/courses/${id}/progress`, {
-        method: 'POST',
+      const response = await authFetch(`http://localhost:7000/api/users/${user.username}/courses/${id}/progress`, {
+        method: 'PATCH',
         headers: {
           'Content-Type': 'application/json',
         },
-        body: JSON.stringify({
-          ...progressData,
-          overallProgress: overallProgress
-        }),
+        body: JSON.stringify(patch),
       });
 
       if (!response.ok) {
@@ -254,6 +312,17 @@ const submitAllQuizAnswers = () => {
       console.error("Error updating progress on server:", error);
     }
   };
+  
+  // The answers, submissions and results of the given quizzes, graded against their correct options
+  const quizSubmission = (quizzes, answers = quizAnswers) => {
+    const patch = { quizAnswers: {}, quizSubmitted: {}, quizResults: {} };
+    quizzes.forEach(quiz => {
+      patch.quizAnswers[quiz.id] = answers[quiz.id];
+      patch.quizSubmitted[quiz.id] = true;
+      patch.quizResults[quiz.id] = answers[quiz.id] === quiz.correctOption;
+    });
+    return patch;
+  };
 
   // Update the calculateProgress function to count all quiz attempts, not just successful ones
 // Update the calculateProgress function to count all quiz attempts, not just successful ones
@@ -338,6 +407,7 @@ const calculateProgress = (courseData, completed, submitted) => {
     setActiveLesson(lesson);
     processVideoUrl(lesson.videoUrl);
     setActiveTab('lessons');
+    loadLesson(lesson);
   };
   
   // Mark a lesson as completed
@@ -345,6 +415,7 @@ const calculateProgress = (courseData, completed, submitted) => {
     if (!completedLessons.includes(lessonId)) {
       const updatedCompletedLessons = [...completedLessons, lessonId];
       setCompletedLessons(updatedCompletedLessons);
+      patchProgressOnServer({ completedLessons: [lessonId] });
       
       // Check if all lessons are now completed
       const allLessonsCompleted = updatedCompletedLessons.length === course.lessons.length;
@@ -435,6 +506,11 @@ const submitQuizAnswer = (quizId, correctOption) => {
   
   // Save progress immediately but don't update certificate status
   saveProgress();
+  patchProgressOnServer({
+    quizAnswers: { [quizId]: selectedAnswer },
+    quizSubmitted: { [quizId]: true },
+    quizResults: { [quizId]: selectedAnswer === correctOption }
+  });
 };
 
 // Add a function to check if all quizzes have answers selected
@@ -445,14 +521,19 @@ const areAllQuestionsAnswered = () => {
 
 // Add a function to submit all answers at once
 // Update submitAllAnswers function to properly count all quizzes
-const submitAllAnswers = () => {
+const submitAllAnswers = async () => {
   if (!course || !course.quizzes || course.quizzes.length === 0) return;
   
   const newSubmitted = { ...quizSubmitted };
   const newResults = { ...quizResults };
   
+  // Answers restored from saved progress may belong to quizzes not opened yet
+  const answered = await withQuizDetails(course.quizzes.filter(quiz => 
+    !quizSubmitted[quiz.id] && quizAnswers[quiz.id] !== undefined
+  ));
+  
   // Process ALL quizzes that have answers selected
-  course.quizzes.forEach(quiz => {
+  answered.forEach(quiz => {
     // Skip quizzes that are already submitted
     if (quizSubmitted[quiz.id]) return;
     
@@ -471,6 +552,7 @@ const submitAllAnswers = () => {
     // Update state with all the submitted quizzes
     setQuizSubmitted(prev => ({...prev, ...newSubmitted}));
     setQuizResults(prev => ({...prev, ...newResults}));
+    patchProgressOnServer(quizSubmission(answered));
     
     // Calculate new progress after submission
     const allLessonsCompleted = completedLessons.length === course.lessons.length;
@@ -487,13 +569,16 @@ const submitAllAnswers = () => {
 };
 
   // Add a comprehensive function to complete the entire course
-const completeEntireCourse = () => {
+const completeEntireCourse = async () => {
   if (!course) return;
   
+  const patch = {};
+  
   // Mark all lessons as complete
   if (course.lessons && course.lessons.length > 0) {
     const allLessonIds = course.lessons.map(lesson => lesson.id);
     setCompletedLessons(allLessonIds);
+    patch.completedLessons = allLessonIds.filter(lessonId => !completedLessons.includes(lessonId));
   }
   
   // Submit all quiz answers (including those not yet answered)
@@ -502,7 +587,10 @@ const completeEntireCourse = () => {
     const newQuizSubmitted = { ...quizSubmitted };
     const newQuizResults = { ...quizResults };
     
-    course.quizzes.forEach(quiz => {
+    // Unsubmitted quizzes are graded here, so their answers are needed
+    const unsubmitted = await withQuizDetails(course.quizzes.filter(quiz => !quizSubmitted[quiz.id]));
+    
+    unsubmitted.forEach(quiz => {
       if (!quizSubmitted[quiz.id]) {
         // If no answer selected, select the correct option to ensure passing
         if (quizAnswers[quiz.id] === undefined) {
@@ -521,10 +609,12 @@ const completeEntireCourse = () => {
     setQuizAnswers(newQuizAnswers);
     setQuizSubmitted(newQuizSubmitted);
     setQuizResults(newQuizResults);
+    Object.assign(patch, quizSubmission(unsubmitted, newQuizAnswers));
   }
   
   // Unlock certificate
   setCertificateUnlocked(true);
+  patchProgressOnServer(patch);
 };
 
   const goBack = () => {
@@ -878,8 +968,8 @@ const completeEntireCourse = () => {
           ) : null}
         </div>
         
-        {activeLesson.description && (
-          <p className="mt-2 text-gray-600">{activeLesson.description}</p>
+        {(activeLesson.description || activeLesson.content) && (
+          <p className="mt-2 text-gray-600">{activeLesson.description || activeLesson.content}</p>
         )}
         
         <div className="mt-6 flex justify-between">
@@ -1086,7 +1176,7 @@ const completeEntireCourse = () => {
             
             {/* Current Quiz Question */}
             <div className="mb-5">
-              <h4 className="text-lg font-medium text-gray-900 mb-4">{course.quizzes[activeQuizIndex].question}</h4>
+              <h4 className="text-lg font-medium text-gray-900 mb-4">{course.quizzes[activeQuizIndex].question ?? 'Loading question...'}</h4>
             </div>
             
             {/* Quiz Options - Always selectable until final submission */}
@@ -0,0 +1,35 @@
+// Session token from /login, sent back as "Authorization: Bearer <token>" so the backend
+// knows whose request it is. Stored next to the user and cleared with it on logout.
+const TOKEN_KEY = 'token';
+
+export function saveSession(data) {
+  localStorage.setItem('user', JSON.stringify(data.user));
+  if (data.token) {
+    localStorage.setItem(TOKEN_KEY, data.token);
+  } else {
+    localStorage.removeItem(TOKEN_KEY);
+  }
+}
+
+export function clearSession() {
+  localStorage.removeItem('user');
+  localStorage.removeItem(TOKEN_KEY);
+}
+
+// Adds the Authorization header to the given headers when logged in
+export function authHeaders(headers = {}) {
+  const token = localStorage.getItem(TOKEN_KEY);
+  return token ? { ...headers, Authorization: `Bearer ${token}` } : headers;
+}
+
+// fetch() for requests that need the session. A 401 means the token expired or the server no
+// longer accepts it, so the stored session is dropped and the user is sent back to log in.
+export async function authFetch(url, options = {}) {
+  const response = await fetch(url, { ...options, headers: authHeaders(options.headers) });
+  if (response.status === 401) {
+    clearSession();
+    window.location.href = '/login';
+    throw new Error('Your session has expired. Please log in again.');
+  }
+  return response;
+}